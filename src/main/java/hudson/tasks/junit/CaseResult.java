@@ -32,6 +32,7 @@ import org.jvnet.localizer.Localizable;
 
 import hudson.model.Run;
 import hudson.tasks.test.TestResult;
+import hudson.tasks.test.TestResultHistory;
 
 import org.dom4j.Element;
 import org.kohsuke.stapler.export.Exported;
@@ -70,10 +71,21 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
      */
     private final String testName;
     private transient String safeName;
+
+    /**
+     * {@link #getTransformedTestName()}, as transformed by the given {@link TestNameTransformer#generation()}.
+     */
+    private transient String transformedTestName;
+    private transient int transformedGeneration;
     private final boolean skipped;
     private final String skippedMessage;
     private final String errorStackTrace;
     private final String errorDetails;
+    /**
+     * {@link FailureSignature} of {@link #errorStackTrace}, computed when the result is recorded.
+     * Null if not failed, or if recorded before signatures were.
+     */
+    private String failureSignature;
     @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "Specific method to restore it")
     private transient SuiteResult parent;
 
@@ -96,9 +108,14 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
      */
     private /*final*/ int failedSince;
 
+    /**
+     * Status of this test compared to the previous build, once classified along with the whole result.
+     */
+    private transient volatile Status status;
+
     private static float parseTime(Element testCase) {
         String time = testCase.attributeValue("time");
-        return new TimeToFloat(time).parse();
+        return TimeToFloat.parse(time);
     }
 
     CaseResult(SuiteResult parent, Element testCase, String testClassName, boolean keepLongStdio) {
@@ -131,6 +148,7 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
         this.parent = parent;
         duration = parseTime(testCase);
         skipped = isMarkedAsSkipped(testCase);
+        failureSignature = isFailed() ? FailureSignature.of(errorStackTrace) : null;
         skippedMessage = getSkippedMessage(testCase);
         @SuppressWarnings("LeakingThisInConstructor")
         Collection<CaseResult> _this = Collections.singleton(this);
@@ -221,6 +239,7 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
         this.duration = 0.0f;
         this.skipped = false;
         this.skippedMessage = null;
+        this.failureSignature = isFailed() ? FailureSignature.of(errorStackTrace) : null;
     }
     
     public ClassResult getParent() {
@@ -270,7 +289,14 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
     }
 
     public String getTransformedTestName() {
-        return TestNameTransformer.getTransformedName(testName);
+        int generation = TestNameTransformer.generation();
+        String transformed = transformedTestName;
+        if (transformed == null || transformedGeneration != generation) {
+            transformed = TestNameTransformer.getTransformedName(testName);
+            transformedTestName = transformed;
+            transformedGeneration = generation;
+        }
+        return transformed;
     }
 
     public String getDisplayName() {
@@ -406,17 +432,56 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
         return failedSince;
     }
 
+    /**
+     * @return true if this test is failing, or skipped and possibly in the middle of a failing streak, and it is
+     * not known yet since when.
+     */
+    boolean needsFailedSince() {
+        return failedSince==0 && !isPassed();
+    }
+
+    /**
+     * Records since when this test has been failing, given the same test in the previous build.
+     * Called once when the result is recorded, see {@link TestResult#recordFailedSince(int, TestResultAction)}.
+     */
+    void recordFailedSince(@CheckForNull CaseResult prev, int number) {
+        if (needsFailedSince()) {
+            // a test skipped in between does not end the streak, so skipped tests carry it on as well
+            if (prev!=null && !prev.isPassed() && prev.getFailedSince() != 0)
+                this.failedSince = prev.getFailedSince();
+            else if (isFailed())
+                this.failedSince = number;
+        }
+    }
+
+    /**
+     * Only needed for old test data recorded without {@link #failedSince}. Walks back the consecutive
+     * failing builds one by one rather than recursively, and no further than {@link TestResultHistory#MAX_BUILDS}.
+     */
     private void recomputeFailedSinceIfNeeded() {
         if (failedSince==0 && getFailCount()==1) {
-            CaseResult prev = getPreviousResult();
-            if(prev!=null && !prev.isPassed())
-                this.failedSince = prev.getFailedSince();
-            else if (getRun() != null) {
-                this.failedSince = getRun().getNumber();
-            } else {
+            if (getRun() == null) {
                 LOGGER.warning("trouble calculating getFailedSince. We've got prev, but no owner.");
                 // failedSince will be 0, which isn't correct. 
+                return;
+            }
+            int since = getRun().getNumber();
+            CaseResult prev = getPreviousResult();
+            for (int i = 0; prev != null && !prev.isPassed() && i < TestResultHistory.MAX_BUILDS; i++) {
+                if (prev.failedSince != 0) {
+                    since = prev.failedSince;
+                    break;
+                }
+                Run<?,?> prevRun = prev.getRun();
+                if (prevRun == null) {
+                    break;
+                }
+                if (prev.isFailed()) {
+                    since = prevRun.getNumber();
+                }
+                prev = prev.getPreviousResult();
             }
+            this.failedSince = since;
         }
     }
 
@@ -550,6 +615,22 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
         return errorDetails;
     }
 
+    /**
+     * If there was an error or a failure, this is the {@link FailureSignature} of the stack trace, which is the
+     * same for test cases failing for the same cause.
+     */
+    @Exported
+    public String getFailureSignature() {
+        if (!isFailed()) {
+            return null;
+        }
+        if (failureSignature == null) {
+            // recorded before signatures were
+            failureSignature = FailureSignature.of(errorStackTrace);
+        }
+        return failureSignature;
+    }
+
     /**
      * @return true if the test was not skipped and did not fail, false otherwise.
      */
@@ -640,8 +721,8 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
 
     public void freeze(SuiteResult parent) {
         this.parent = parent;
-        // some old test data doesn't have failedSince value set, so for those compute them.
-        recomputeFailedSinceIfNeeded();
+        // failedSince is recorded along with the result, so freezing does not look at older builds.
+        // Some old test data doesn't have it set, for those it is computed on demand.
     }
 
     public int compareTo(CaseResult that) {
@@ -675,7 +756,37 @@ public class CaseResult extends TestResult implements Comparable<CaseResult> {
         if (skipped) {
             return Status.SKIPPED;
         }
-        CaseResult pr = getPreviousResult();
+        Status s = status;
+        if (s == null) {
+            // classify all test cases of the result at once rather than looking up the previous result of each
+            hudson.tasks.junit.TestResult tr = parent != null ? parent.getParent() : null;
+            if (tr != null) {
+                tr.classifyStatuses();
+                s = status;
+            }
+            if (s == null) {
+                s = getStatus(getPreviousResult());
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Records the status of this test, given the same test in the previous build.
+     * Called by {@link TestResult#classifyStatuses()}.
+     */
+    void classifyStatus(@CheckForNull CaseResult pr) {
+        status = skipped ? Status.SKIPPED : getStatus(pr);
+    }
+
+    /**
+     * Forgets the recorded status, as the result or the previous build it was classified against changed.
+     */
+    void resetStatus() {
+        status = null;
+    }
+
+    private Status getStatus(@CheckForNull CaseResult pr) {
         if(pr==null) {
             return isPassed() ? Status.PASSED : Status.FAILED;
         }
@@ -0,0 +1,82 @@
+package hudson.tasks.junit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The failed test cases of a result sharing the same {@link FailureSignature}, that is, most likely failing for
+ * the same cause.
+ */
+public final class FailureCluster {
+
+    private final String signature;
+    private final List<CaseResult> tests = new ArrayList<>();
+
+    private FailureCluster(String signature) {
+        this.signature = signature;
+    }
+
+    /**
+     * Groups the given failed test cases by their {@link CaseResult#getFailureSignature() signature}.
+     *
+     * @return the groups, largest first.
+     */
+    static List<FailureCluster> of(List<CaseResult> failedTests) {
+        Map<String, FailureCluster> clusters = new LinkedHashMap<>();
+        for (CaseResult c : failedTests) {
+            String signature = c.getFailureSignature();
+            FailureCluster cluster = clusters.get(signature);
+            if (cluster == null) {
+                cluster = new FailureCluster(signature);
+                clusters.put(signature, cluster);
+            }
+            cluster.tests.add(c);
+        }
+        List<FailureCluster> result = new ArrayList<>(clusters.values());
+        // stable, so clusters of the same size stay in the order of their first failure
+        Collections.sort(result, BY_SIZE);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the hash identifying the cause of the failures.
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return the failed test cases, in the order of the failed tests of the result.
+     */
+    public List<CaseResult> getTests() {
+        return Collections.unmodifiableList(tests);
+    }
+
+    public int getCount() {
+        return tests.size();
+    }
+
+    /**
+     * @return the first failed test case, whose stack trace is representative of all of them.
+     */
+    public CaseResult getExample() {
+        return tests.get(0);
+    }
+
+    /**
+     * @return the first line of the stack trace of the {@link #getExample() example}.
+     */
+    public String getSummary() {
+        return FailureSignature.summarize(getExample().getErrorStackTrace());
+    }
+
+    private static final Comparator<FailureCluster> BY_SIZE = new Comparator<FailureCluster>() {
+        public int compare(FailureCluster a, FailureCluster b) {
+            return Integer.compare(b.tests.size(), a.tests.size());
+        }
+    };
+}
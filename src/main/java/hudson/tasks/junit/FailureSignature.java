@@ -0,0 +1,103 @@
+package hudson.tasks.junit;
+
+import hudson.Util;
+
+import javax.annotation.CheckForNull;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the signature of a failure, a hash of its stack trace with everything that differs between failures
+ * of the same cause taken out, so that test cases failing for the same reason can be grouped.
+ *
+ * <p>
+ * Stack frames lose their line numbers and the generated parts of lambda names, and only the top
+ * {@link #MAX_FRAMES} frames of the exception and of each of its causes are kept. Exception messages keep their
+ * words, but numbers, hexadecimal ids, quoted strings and the values in {@code expected:<...> but was:<...>}
+ * are replaced by placeholders.
+ */
+public final class FailureSignature {
+
+    /**
+     * Number of top frames of the exception and of each cause the signature depends on.
+     */
+    static final int MAX_FRAMES = Integer.getInteger(FailureSignature.class.getName() + ".maxFrames", 10);
+
+    private static final Pattern LINE_NUMBER = Pattern.compile("\\(([^():]+):\\d+\\)");
+
+    private static final Pattern LAMBDA = Pattern.compile("\\$\\$Lambda\\$\\d+(?:/(?:0x)?[0-9a-fA-F]+)?|(lambda\\$[\\w$]*?)\\$\\d+");
+
+    private static final Pattern QUOTED = Pattern.compile("'[^'\\n]*'|\"[^\"\\n]*\"");
+
+    private static final Pattern ANGLE_BRACKETED = Pattern.compile("<[^<>\\n]*>");
+
+    private static final Pattern HEX = Pattern.compile("\\b0x[0-9a-fA-F]+\\b|@[0-9a-fA-F]{4,}\\b|\\b[0-9a-fA-F]{8}(?:-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}\\b");
+
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private FailureSignature() {
+    }
+
+    /**
+     * @return the signature of the given stack trace, as a hexadecimal hash.
+     */
+    public static String of(String stackTrace) {
+        return Util.getDigestOf(normalize(stackTrace));
+    }
+
+    /**
+     * Normalizes a stack trace as described {@link FailureSignature above}.
+     */
+    static String normalize(String stackTrace) {
+        StringBuilder normalized = new StringBuilder();
+        int frames = 0;
+        for (String line : stackTrace.split("\r?\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("...")) {
+                continue;
+            }
+            if (line.startsWith("at ")) {
+                if (frames++ >= MAX_FRAMES) {
+                    continue;
+                }
+                line = normalizeFrame(line.substring(3));
+            } else {
+                // the exception, one of its causes or a line of a message
+                frames = 0;
+                line = normalizeMessage(line);
+            }
+            normalized.append(line).append('\n');
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Takes the line number and the generated parts of lambda names out of a stack frame.
+     */
+    static String normalizeFrame(String frame) {
+        frame = LINE_NUMBER.matcher(frame).replaceAll("($1)");
+        return LAMBDA.matcher(frame).replaceAll("$1");
+    }
+
+    /**
+     * Replaces the values in a line of an exception message by placeholders.
+     */
+    static String normalizeMessage(String message) {
+        message = QUOTED.matcher(message).replaceAll("?");
+        message = ANGLE_BRACKETED.matcher(message).replaceAll("<?>");
+        message = HEX.matcher(message).replaceAll("#");
+        return NUMBER.matcher(message).replaceAll("#");
+    }
+
+    /**
+     * @return the first line of the given stack trace, usually the exception and its message, to sum up a failure.
+     */
+    @CheckForNull
+    static String summarize(@CheckForNull String stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        String trimmed = stackTrace.trim();
+        int end = trimmed.indexOf('\n');
+        return (end < 0 ? trimmed : trimmed.substring(0, end)).trim();
+    }
+}
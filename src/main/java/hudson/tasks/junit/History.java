@@ -23,11 +23,16 @@
  */
 package hudson.tasks.junit;
 
+import hudson.Util;
 import hudson.model.AbstractBuild;
+import hudson.model.Job;
 import hudson.model.Run;
 import jenkins.model.Jenkins;
+import hudson.tasks.test.AbstractTestResultAction;
+import hudson.tasks.test.ResultPrefetcher;
 import hudson.tasks.test.TestObject;
 import hudson.tasks.test.TestResult;
+import hudson.tasks.test.TestResultHistory;
 import hudson.util.ChartUtil;
 import hudson.util.ColorPalette;
 import hudson.util.DataSetBuilder;
@@ -51,6 +56,7 @@ import org.jfree.chart.renderer.category.StackedAreaRenderer;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.ui.RectangleInsets;
 import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
 
 /**
  * History of {@link hudson.tasks.test.TestObject} over time.
@@ -69,28 +75,139 @@ public class History {
 	}
 	
     public boolean historyAvailable() {
-       if (testObject.getRun().getParent().getBuilds().size() > 1)
-           return true;
-        else
-           return false; 
+       Run<?,?> first = testObject.getRun().getParent().getFirstBuild();
+       return first != null && first.getNextBuild() != null;
     }
-	
+
+    /**
+     * Number of builds shown on one page of the history unless asked otherwise.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 25;
+
+    /**
+     * Maximum number of builds a single page or graph of the history may cover.
+     */
+    public static final int MAX_WINDOW = Integer.getInteger(History.class.getName() + ".maxWindow", 1000);
+
+    /**
+     * Maximum number of points drawn on a graph. Larger windows are downsampled into buckets.
+     */
+    public static final int MAX_POINTS = Integer.getInteger(History.class.getName() + ".maxPoints", 100);
+
+    /**
+     * Gets one page of the history, newest build first.
+     *
+     * <p>
+     * Pages are addressed by build number rather than by position, so only the builds on the page
+     * are ever loaded, no matter how long the history of the job is. Builds without test results
+     * count against the limit but are not listed.
+     *
+     * @param newest number of the newest build on the page, or 0 for the last build of the job.
+     * @param limit maximum number of builds on the page, capped at {@link #MAX_WINDOW}.
+     * @return the requested page.
+     */
+    public Page getPage(int newest, int limit) {
+        Job<?,?> job = testObject.getRun().getParent();
+        limit = Math.max(1, Math.min(limit, MAX_WINDOW));
+        Run<?,?> first = newest > 0 ? job.getNearestOldBuild(newest) : job.getLastBuild();
+        List<Run<?,?>> builds = new ArrayList<Run<?,?>>();
+        Integer older = null;
+        Integer newer = null;
+        if (first != null) {
+            TestResultHistory<AbstractTestResultAction> walk = TestResultHistory.fromBuild(first, AbstractTestResultAction.class)
+                    .withMaxBuilds(limit);
+            for (AbstractTestResultAction<?> a : walk) {
+                builds.add(a.run);
+            }
+            if (walk.getResumeBuild() != null) {
+                older = walk.getResumeBuild().getNumber();
+            }
+
+            Run<?,?> n = first.getNextBuild();
+            for (int i = 0; n != null && i < limit; i++, n = n.getNextBuild()) {
+                newer = n.getNumber();
+            }
+        }
+        return new Page(builds, getResults(builds), newer, older);
+    }
+
     public List<TestResult> getList(int start, int end) {
+    	Run<?,?> b = testObject.getRun().getParent().getLastBuild();
+    	for (int i = 0; b != null && i < start; i++) {
+    		b = b.getPreviousBuild();
+    	}
+    	List<Run<?,?>> builds = new ArrayList<Run<?,?>>();
+    	if (b != null && end > start) {
+    		for (AbstractTestResultAction<?> a : TestResultHistory.fromBuild(b, AbstractTestResultAction.class)
+    				.withMaxBuilds(Math.min(end - start, MAX_WINDOW))) {
+    			builds.add(a.run);
+    		}
+    	}
+    	return getResults(builds);
+    }
+
+    /**
+     * Gets the results of the most recent builds, up to {@link #MAX_WINDOW} of them.
+     */
+	public List<TestResult> getList() {
+		return getList(0, MAX_WINDOW);
+	}
+
+    private List<TestResult> getResults(List<Run<?,?>> window) {
     	List<TestResult> list = new ArrayList<TestResult>();
-    	end = Math.min(end, testObject.getRun().getParent().getBuilds().size());
-    	for (Run<?,?> b: testObject.getRun().getParent().getBuilds().subList(start, end)) {
+    	List<Run<?,?>> builds = new ArrayList<Run<?,?>>();
+    	List<AbstractTestResultAction<?>> actions = new ArrayList<AbstractTestResultAction<?>>();
+    	for (Run<?,?> b: window) {
     		if (b.isBuilding()) continue;
-    		TestResult o = testObject.getResultInRun(b);
-    		if (o != null) {
-    			list.add(o);
+    		builds.add(b);
+    		actions.add(b.getAction(AbstractTestResultAction.class));
+    	}
+    	// read the results of all builds ahead of the lookups below instead of one at a time
+    	List<hudson.tasks.junit.TestResult> pinned = new ArrayList<hudson.tasks.junit.TestResult>();
+    	try (ResultPrefetcher results = ResultPrefetcher.start(actions)) {
+    		for (int i = 0; i < builds.size(); i++) {
+    			// the actions only hold their results weakly, so keep them reachable until all are looked up
+    			if (actions.get(i) != null) {
+    				pinned.add(results.get(actions.get(i)));
+    			}
+    			TestResult o = testObject.getResultInRun(builds.get(i));
+    			if (o != null) {
+    				list.add(o);
+    			}
     		}
     	}
     	return list;
     }
-    
-	public List<TestResult> getList() {
-		return getList(0, testObject.getRun().getParent().getBuilds().size());
-	}
+
+    /**
+     * Gets the results the graph of the current request is about: either a page addressed by
+     * the {@code newest} and {@code limit} parameters, the legacy {@code start} and {@code end}
+     * range or else the most recent builds.
+     */
+    private List<TestResult> getRequestedList() {
+        StaplerRequest req = Stapler.getCurrentRequest();
+        if (req.getParameter("newest") != null || req.getParameter("limit") != null) {
+            return getPage(asInt(req.getParameter("newest"), 0),
+                    asInt(req.getParameter("limit"), DEFAULT_PAGE_SIZE)).getList();
+        }
+        try {
+            return getList(Integer.parseInt(req.getParameter("start")), Integer.parseInt(req.getParameter("end")));
+        } catch (NumberFormatException e) {
+            return getList();
+        }
+    }
+
+    /**
+     * Splits the results into at most {@link #MAX_POINTS} buckets of consecutive builds.
+     */
+    static List<List<TestResult>> downsample(List<TestResult> list) {
+        int size = (list.size() + MAX_POINTS - 1) / MAX_POINTS;
+        List<List<TestResult>> buckets = new ArrayList<List<TestResult>>();
+        for (int i = 0; i < list.size(); i += size) {
+            buckets.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return buckets;
+    }
 
     /**
      * Graph of duration of tests over time.
@@ -103,13 +220,16 @@ public class History {
            protected DataSetBuilder<String, ChartLabel> createDataSet() {
                DataSetBuilder<String, ChartLabel> data = new DataSetBuilder<String, ChartLabel>();
                
-               List<TestResult> list;
-               try {
-               	list = getList(
-               			Integer.parseInt(Stapler.getCurrentRequest().getParameter("start")), 
-               			Integer.parseInt(Stapler.getCurrentRequest().getParameter("end")));
-               } catch (NumberFormatException e) {
-               	list = getList();
+               List<TestResult> list = getRequestedList();
+               if (list.size() > MAX_POINTS) {
+                   // stacked so that the bands end at the minimum, average and maximum duration of each bucket
+                   for (List<TestResult> bucket : downsample(list)) {
+                       BucketLabel label = new BucketLabel(bucket);
+                       data.add(label.getMinDuration(), "0min", label);
+                       data.add(label.getAvgDuration() - label.getMinDuration(), "1avg", label);
+                       data.add(label.getMaxDuration() - label.getAvgDuration(), "2max", label);
+                   }
+                   return data;
                }
                
 			for (hudson.tasks.test.TestResult o: list) {
@@ -141,13 +261,15 @@ public class History {
             protected DataSetBuilder<String, ChartLabel> createDataSet() {
                 DataSetBuilder<String, ChartLabel> data = new DataSetBuilder<String, ChartLabel>();
 
-                List<TestResult> list;
-                try {
-                	list = getList(
-                			Integer.parseInt(Stapler.getCurrentRequest().getParameter("start")), 
-                			Integer.parseInt(Stapler.getCurrentRequest().getParameter("end")));
-                } catch (NumberFormatException e) {
-                	list = getList();
+                List<TestResult> list = getRequestedList();
+                if (list.size() > MAX_POINTS) {
+                    for (List<TestResult> bucket : downsample(list)) {
+                        BucketLabel label = new BucketLabel(bucket);
+                        data.add(label.getAvgPassCount(), "2Passed", label);
+                        data.add(label.getAvgFailCount(), "1Failed", label);
+                        data.add(label.getAvgSkipCount(), "0Skipped", label);
+                    }
+                    return data;
                 }
                 
                 for (TestResult o: list) {
@@ -228,8 +350,7 @@ public class History {
                 public String generateToolTip(CategoryDataset dataset, int row,
                         int column) {
                     ChartLabel label = (ChartLabel) dataset.getColumnKey(column);
-                    return label.o.getRun().getDisplayName() + " : "
-                            + label.o.getDurationString();
+                    return label.getToolTip();
                 }
             };
             plot.setRenderer(ar);
@@ -285,6 +406,10 @@ public class History {
         	return null;
         }
 
+        public String getToolTip() {
+            return o.getRun().getDisplayName() + " : " + o.getDurationString();
+        }
+
         @Override
         public int hashCode() {
             return o.hashCode();
@@ -303,6 +428,119 @@ public class History {
 
     }
 
+    /**
+     * Label of a bucket of consecutive builds on a downsampled graph.
+     * The bucket is represented by its newest build.
+     */
+    class BucketLabel extends ChartLabel {
+        private final List<TestResult> bucket;
+        private float minDuration = Float.MAX_VALUE, maxDuration, totalDuration;
+        private int minFailCount = Integer.MAX_VALUE, maxFailCount;
+        private long passCount, failCount, skipCount;
+
+        BucketLabel(List<TestResult> bucket) {
+            super(bucket.get(0));
+            this.bucket = bucket;
+            for (TestResult r : bucket) {
+                minDuration = Math.min(minDuration, r.getDuration());
+                maxDuration = Math.max(maxDuration, r.getDuration());
+                totalDuration += r.getDuration();
+                minFailCount = Math.min(minFailCount, r.getFailCount());
+                maxFailCount = Math.max(maxFailCount, r.getFailCount());
+                passCount += r.getPassCount();
+                failCount += r.getFailCount();
+                skipCount += r.getSkipCount();
+            }
+        }
+
+        public double getMinDuration() {
+            return minDuration;
+        }
+
+        public double getMaxDuration() {
+            return maxDuration;
+        }
+
+        public double getAvgDuration() {
+            return totalDuration / bucket.size();
+        }
+
+        public double getAvgPassCount() {
+            return (double) passCount / bucket.size();
+        }
+
+        public double getAvgFailCount() {
+            return (double) failCount / bucket.size();
+        }
+
+        public double getAvgSkipCount() {
+            return (double) skipCount / bucket.size();
+        }
+
+        @Override
+        public String getToolTip() {
+            return toString() + " : " + Util.getTimeSpanString((long) (getMinDuration() * 1000)) + " - "
+                    + Util.getTimeSpanString((long) (getMaxDuration() * 1000)) + ", "
+                    + minFailCount + " - " + maxFailCount + " failed";
+        }
+
+        @Override
+        public String toString() {
+            return bucket.get(bucket.size() - 1).getRun().getDisplayName() + " - " + o.getRun().getDisplayName();
+        }
+    }
+
+    /**
+     * One page of the history, see {@link History#getPage(int, int)}.
+     */
+    public static final class Page {
+        private final List<Run<?,?>> builds;
+        private final List<TestResult> list;
+        private final Integer newer, older;
+
+        Page(List<Run<?,?>> builds, List<TestResult> list, Integer newer, Integer older) {
+            this.builds = builds;
+            this.list = list;
+            this.newer = newer;
+            this.older = older;
+        }
+
+        /**
+         * @return the builds on this page, newest first.
+         */
+        public List<Run<?,?>> getBuilds() {
+            return builds;
+        }
+
+        /**
+         * @return the results of the test object in the builds on this page, newest first.
+         */
+        public List<TestResult> getList() {
+            return list;
+        }
+
+        /**
+         * @return the number of the newest build of the next newer page, or null if this is the newest page.
+         */
+        public Integer getNewer() {
+            return newer;
+        }
+
+        /**
+         * @return the number of the newest build of the next older page, or null if this is the oldest page.
+         */
+        public Integer getOlder() {
+            return older;
+        }
+
+        /**
+         * @return the number of the newest build on this page, or null if the page is empty.
+         */
+        public Integer getNewest() {
+            return builds.isEmpty() ? null : builds.get(0).getNumber();
+        }
+    }
+
     public static int asInt(String s, int defalutValue) {
         if (s==null)    return defalutValue;
         try {
@@ -0,0 +1,201 @@
+package hudson.tasks.junit;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Computer;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The report files already recorded by a build, so that recording the same pattern again, as Pipelines often do
+ * after each stage, only parses the reports that are new or changed since.
+ *
+ * <p>
+ * Reports are identified by the node they are on and their absolute path, and considered unchanged if their size
+ * and modification time are the same. Optionally, see {@link #HASH}, they are also considered unchanged if their
+ * content hash is, as when a report is rewritten as is. The reports of a build are kept in
+ * {@code junitReports.xml} in its directory, and handed to the agent parsing the reports, which returns the
+ * reports it has recorded.
+ */
+final class IngestedReports implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(IngestedReports.class.getName());
+
+    /**
+     * Set to true to parse all reports on every call, as before.
+     */
+    static /* not final */ boolean DISABLED = Boolean.getBoolean(IngestedReports.class.getName() + ".disabled");
+
+    /**
+     * Set to true to also hash the content of reports whose modification time changed, so that reports rewritten
+     * as they were are not parsed again, at the cost of reading every such report.
+     */
+    static /* not final */ boolean HASH = Boolean.getBoolean(IngestedReports.class.getName() + ".hash");
+
+    static final String FILE_NAME = "junitReports.xml";
+
+    /**
+     * Name of the node the reports are on, the empty string for the master.
+     */
+    private final String node;
+
+    /**
+     * {@link #HASH} as set on the master, as reports are recorded on the agent.
+     */
+    private final boolean hash = HASH;
+
+    /**
+     * Reports recorded by earlier calls.
+     */
+    private final Map<String, Report> known;
+
+    /**
+     * Reports recorded by this call.
+     */
+    private final Map<String, Report> added = new HashMap<>();
+
+    /**
+     * Number of reports skipped by this call because they were recorded before.
+     */
+    private int skipped;
+
+    /**
+     * Number of reports to be parsed by this call because they are new or changed.
+     */
+    private int parsed;
+
+    private IngestedReports(String node, Map<String, Report> known) {
+        this.node = node;
+        this.known = known;
+    }
+
+    /**
+     * @param workspace the workspace the reports to record are in.
+     * @return the reports recorded by the given build so far.
+     */
+    static IngestedReports load(Run<?, ?> build, FilePath workspace) {
+        Computer computer = workspace.toComputer();
+        return new IngestedReports(computer != null ? computer.getName() : "", read(build));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Report> read(Run<?, ?> build) {
+        XmlFile file = getFile(build);
+        if (file.exists()) {
+            try {
+                return (Map<String, Report>) file.read();
+            } catch (IOException | ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file + ", parsing all reports again", e);
+            }
+        }
+        return new HashMap<>();
+    }
+
+    private static XmlFile getFile(Run<?, ?> build) {
+        return new XmlFile(new File(build.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Adds the reports recorded by this call to those of the given build. Concurrent calls, as by parallel
+     * branches, each add their own reports.
+     */
+    void save(Run<?, ?> build) throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        synchronized (lock(build)) {
+            Map<String, Report> reports = read(build);
+            reports.putAll(added);
+            getFile(build).write(reports);
+        }
+    }
+
+    private static Object lock(Run<?, ?> build) {
+        return LOCKS[(build.getRootDir().hashCode() & Integer.MAX_VALUE) % LOCKS.length];
+    }
+
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    /**
+     * Takes over what a copy of this, sent to the agent parsing the reports, has recorded.
+     */
+    void update(IngestedReports copy) {
+        if (copy != this) {
+            added.putAll(copy.added);
+            skipped = copy.skipped;
+            parsed = copy.parsed;
+        }
+    }
+
+    /**
+     * Tells whether the given report was recorded before, and otherwise records it.
+     *
+     * @return true if the report is new or changed, and needs to be parsed.
+     */
+    boolean record(File report) throws IOException {
+        // node names cannot contain ':'
+        String key = node + ':' + report.getAbsolutePath();
+        long size = report.length();
+        long lastModified = report.lastModified();
+        Report known = this.known.get(key);
+        if (known != null && known.size == size && known.lastModified == lastModified) {
+            skipped++;
+            return false;
+        }
+        String digest = hash ? Util.getDigestOf(report) : null;
+        added.put(key, new Report(size, lastModified, digest));
+        if (digest != null && known != null && known.size == size && digest.equals(known.hash)) {
+            skipped++;
+            return false;
+        }
+        parsed++;
+        return true;
+    }
+
+    /**
+     * @return the number of reports skipped because they were recorded before.
+     */
+    int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return the number of new or changed reports to be parsed.
+     */
+    int getParsed() {
+        return parsed;
+    }
+
+    static final class Report implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+        private final long lastModified;
+        /**
+         * Content hash, or null if not {@link IngestedReports#HASH hashed}.
+         */
+        private final String hash;
+
+        Report(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -31,13 +31,16 @@ import hudson.model.AbstractBuild;
 import hudson.model.Run;
 import hudson.remoting.VirtualChannel;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import jenkins.MasterToSlaveFileCallable;
 
-import org.apache.tools.ant.types.FileSet;
-import org.apache.tools.ant.DirectoryScanner;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -105,46 +108,91 @@ public class JUnitParser extends TestResultParser {
     public TestResult parseResult(String testResultLocations, Run<?,?> build, PipelineTestDetails pipelineTestDetails,
                                   FilePath workspace, Launcher launcher, TaskListener listener)
             throws InterruptedException, IOException {
+        // [BUG 3123310] TODO - Test Result Refactor: review and fix TestDataPublisher/TestAction subsystem]
+        // also get code that deals with testDataPublishers from JUnitResultArchiver.perform
+
+        return parseResult(testResultLocations, build, pipelineTestDetails, workspace, launcher, listener, null);
+    }
+
+    /**
+     * Parses only the reports that are not in the given reports recorded before, and adds them to these.
+     *
+     * @param ingested the reports recorded so far, or null to parse all reports.
+     */
+    TestResult parseResult(String testResultLocations, Run<?,?> build, PipelineTestDetails pipelineTestDetails,
+                           FilePath workspace, Launcher launcher, TaskListener listener,
+                           @CheckForNull IngestedReports ingested)
+            throws InterruptedException, IOException {
         final long buildTime = build.getTimestamp().getTimeInMillis();
         final long timeOnMaster = System.currentTimeMillis();
 
-        // [BUG 3123310] TODO - Test Result Refactor: review and fix TestDataPublisher/TestAction subsystem]
-        // also get code that deals with testDataPublishers from JUnitResultArchiver.perform
+        Parsed parsed = workspace.act(new ParseResultCallable(testResultLocations, buildTime, timeOnMaster, keepLongStdio,
+                allowEmptyResults, pipelineTestDetails, ingested));
+        listener.getLogger().println(Messages.JUnitParser_ReportsFound(parsed.reports, parsed.discoveryTime));
+        if (ingested != null) {
+            ingested.update(parsed.ingested);
+        }
+        return parsed.result;
+    }
 
-        return workspace.act(new ParseResultCallable(testResultLocations, buildTime, timeOnMaster, keepLongStdio,
-                allowEmptyResults, pipelineTestDetails));
+    private static final class Parsed implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final TestResult result;
+        private final IngestedReports ingested;
+        private final int reports;
+        private final long discoveryTime;
+
+        Parsed(TestResult result, IngestedReports ingested, int reports, long discoveryTime) {
+            this.result = result;
+            this.ingested = ingested;
+            this.reports = reports;
+            this.discoveryTime = discoveryTime;
+        }
     }
 
-    private static final class ParseResultCallable extends MasterToSlaveFileCallable<TestResult> {
+    private static final class ParseResultCallable extends MasterToSlaveFileCallable<Parsed> {
         private final long buildTime;
         private final String testResults;
         private final long nowMaster;
         private final boolean keepLongStdio;
         private final boolean allowEmptyResults;
         private final PipelineTestDetails pipelineTestDetails;
+        private final IngestedReports ingested;
 
         private ParseResultCallable(String testResults, long buildTime, long nowMaster,
                                     boolean keepLongStdio, boolean allowEmptyResults,
-                                    PipelineTestDetails pipelineTestDetails) {
+                                    PipelineTestDetails pipelineTestDetails, IngestedReports ingested) {
             this.buildTime = buildTime;
             this.testResults = testResults;
             this.nowMaster = nowMaster;
             this.keepLongStdio = keepLongStdio;
             this.allowEmptyResults = allowEmptyResults;
             this.pipelineTestDetails = pipelineTestDetails;
+            this.ingested = ingested;
         }
 
-        public TestResult invoke(File ws, VirtualChannel channel) throws IOException {
+        public Parsed invoke(File ws, VirtualChannel channel) throws IOException {
             final long nowSlave = System.currentTimeMillis();
 
-            FileSet fs = Util.createFileSet(ws, testResults);
-            DirectoryScanner ds = fs.getDirectoryScanner();
+            long start = System.nanoTime();
+            List<File> files = new ReportScanner(ws, testResults).scan();
+            long discoveryTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
             TestResult result = null;
 
-            String[] files = ds.getIncludedFiles();
-            if (files.length > 0) {
-                result = new TestResult(buildTime + (nowSlave - nowMaster), ds, keepLongStdio, pipelineTestDetails);
-                result.tally();
+            if (!files.isEmpty()) {
+                long buildTimeOnSlave = buildTime + (nowSlave - nowMaster);
+                List<File> changed = ingested != null ? changed(files, buildTimeOnSlave) : files;
+                if (!changed.isEmpty()) {
+                    result = new TestResult(keepLongStdio);
+                    try (Closeable readers = SAXReaderPool.open()) {
+                        result.parse(buildTimeOnSlave, changed, pipelineTestDetails);
+                    }
+                    result.tally();
+                } else {
+                    // all of them were recorded before
+                    result = new TestResult();
+                }
             } else {
                 if (this.allowEmptyResults) {
                     result = new TestResult();
@@ -154,7 +202,27 @@ public class JUnitParser extends TestResultParser {
                     throw new AbortException(Messages.JUnitResultArchiver_NoTestReportFound());
                 }
             }
-            return result;
+            return new Parsed(result, ingested, files.size(), discoveryTime);
+        }
+
+        /**
+         * @return the files that were not recorded before, leaving out those that are too old to be parsed anyway.
+         */
+        private List<File> changed(List<File> files, long buildTime) throws IOException {
+            List<File> changed = new ArrayList<>();
+            for (File report : files) {
+                if (buildTime - 3000/*error margin, as in TestResult.parse*/ > report.lastModified()) {
+                    continue;
+                }
+                if (ingested.record(report)) {
+                    changed.add(report);
+                }
+            }
+            if (changed.isEmpty() && ingested.getSkipped() == 0) {
+                // none of them are new, for TestResult.parse to report it
+                return files;
+            }
+            return changed;
         }
     }
 
@@ -53,7 +53,10 @@ import org.kohsuke.stapler.QueryParameter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jenkins.tasks.SimpleBuildStep;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -133,8 +136,15 @@ public class JUnitResultArchiver extends Recorder implements SimpleBuildStep, JU
                                     String expandedTestResults, Run<?,?> run, @Nonnull FilePath workspace,
                                     Launcher launcher, TaskListener listener)
             throws IOException, InterruptedException {
+        return parse(task, pipelineTestDetails, expandedTestResults, run, workspace, launcher, listener, null);
+    }
+
+    private static TestResult parse(@Nonnull JUnitTask task, PipelineTestDetails pipelineTestDetails,
+                                    String expandedTestResults, Run<?,?> run, @Nonnull FilePath workspace,
+                                    Launcher launcher, TaskListener listener, @CheckForNull IngestedReports ingested)
+            throws IOException, InterruptedException {
         return new JUnitParser(task.isKeepLongStdio(), task.isAllowEmptyResults())
-                .parseResult(expandedTestResults, run, pipelineTestDetails, workspace, launcher, listener);
+                .parseResult(expandedTestResults, run, pipelineTestDetails, workspace, launcher, listener, ingested);
     }
 
     @Deprecated
@@ -160,58 +170,153 @@ public class JUnitResultArchiver extends Recorder implements SimpleBuildStep, JU
     public static TestResultAction parseAndAttach(@Nonnull JUnitTask task, PipelineTestDetails pipelineTestDetails,
                                                   Run build, FilePath workspace, Launcher launcher, TaskListener listener)
             throws InterruptedException, IOException {
+        // only the reports that were not recorded by an earlier call in this build are parsed
+        return parseAndAttach(task, pipelineTestDetails, build, workspace, launcher, listener,
+                IngestedReports.DISABLED ? null : IngestedReports.load(build, workspace));
+    }
+
+    /**
+     * @param ingested the reports recorded so far, or null to parse all reports.
+     */
+    static TestResultAction parseAndAttach(@Nonnull JUnitTask task, PipelineTestDetails pipelineTestDetails,
+                                           Run build, FilePath workspace, Launcher launcher, TaskListener listener,
+                                           @CheckForNull IngestedReports ingested)
+            throws InterruptedException, IOException {
         listener.getLogger().println(Messages.JUnitResultArchiver_Recording());
 
         final String testResults = build.getEnvironment(listener).expand(task.getTestResults());
 
-        TestResult result = parse(task, pipelineTestDetails, testResults, build, workspace, launcher, listener);
+        TestResult result = parse(task, pipelineTestDetails, testResults, build, workspace, launcher, listener, ingested);
 
-        synchronized (build) {
-            // TODO can the build argument be omitted now, or is it used prior to the call to addAction?
+        if (ingested != null && ingested.getParsed() == 0 && ingested.getSkipped() > 0) {
+            listener.getLogger().println(Messages.JUnitResultArchiver_AlreadyRecorded(ingested.getSkipped()));
             TestResultAction action = build.getAction(TestResultAction.class);
-            boolean appending;
-            if (action == null) {
-                appending = false;
-                action = new TestResultAction(build, result, listener);
-            } else {
-                appending = true;
-                result.freeze(action);
-                action.mergeResult(result, listener);
+            if (action != null) {
+                ingested.save(build);
+                return action;
             }
-            action.setHealthScaleFactor(task.getHealthScaleFactor()); // overwrites previous value if appending
-            if (result.isEmpty()) {
-                if (build.getResult() == Result.FAILURE) {
-                    // most likely a build failed before it gets to the test phase.
-                    // don't report confusing error message.
-                    return null;
-                }
-                if (task.isAllowEmptyResults()) {
-                    // User allow empty results
-                    listener.getLogger().println(Messages.JUnitResultArchiver_ResultIsEmpty());
-                    return null;
-                }
-                // most likely a configuration error in the job - e.g. false pattern to match the JUnit result files
-                throw new AbortException(Messages.JUnitResultArchiver_ResultIsEmpty());
+            // the reports recorded before held no tests either, so this is no different from finding none
+        }
+
+        if (isEmpty(result)) {
+            if (ingested != null) {
+                // recorded, so that recording them again is no different
+                ingested.save(build);
+            }
+            if (build.getResult() == Result.FAILURE) {
+                // most likely a build failed before it gets to the test phase.
+                // don't report confusing error message.
+                return null;
             }
+            if (task.isAllowEmptyResults()) {
+                // User allow empty results
+                listener.getLogger().println(Messages.JUnitResultArchiver_ResultIsEmpty());
+                return null;
+            }
+            // most likely a configuration error in the job - e.g. false pattern to match the JUnit result files
+            throw new AbortException(Messages.JUnitResultArchiver_ResultIsEmpty());
+        }
+
+        boolean appending = build.getAction(TestResultAction.class) != null;
+        List<TestDataPublisher> publishers = task.getTestDataPublishers();
+        // only the publishers read the result once it is merged
+        boolean keep = publishers != null && !publishers.isEmpty();
+        TestResultAction action = mergeIntoAction(build, result, listener, keep);
+        action.setHealthScaleFactor(task.getHealthScaleFactor()); // overwrites previous value if appending
+
+        // TODO: Move into JUnitParser [BUG 3123310]
+        if (keep) {
+            for (Data d : TestDataContributor.contribute(publishers, build, workspace, launcher, listener, result)) {
+                action.addData(d);
+            }
+        }
+
+        if (ingested != null) {
+            ingested.save(build);
+        }
+
+        if (appending) {
+            build.save();
+        }
 
-            // TODO: Move into JUnitParser [BUG 3123310]
-            if (task.getTestDataPublishers() != null) {
-                for (TestDataPublisher tdp : task.getTestDataPublishers()) {
-                    Data d = tdp.contributeTestData(build, workspace, launcher, listener, result);
-                    if (d != null) {
-                        action.addData(d);
+        return action;
+    }
+
+    /**
+     * Actions created for builds that had none, until they hold a result and are attached.
+     */
+    private static final Map<Run<?, ?>, PendingAction> PENDING_ACTIONS = new HashMap<>();
+
+    /**
+     * Merges a result into the action of the build.
+     *
+     * <p>
+     * Only looking up and attaching the action is done holding the lock of the build, so that parallel branches
+     * recording their results do not wait for each other. A build without an action gets one that is shared by
+     * all concurrent callers, and only attached once it holds a result, so that no one sees it empty.
+     */
+    static TestResultAction mergeIntoAction(Run<?, ?> build, TestResult result, TaskListener listener) {
+        return mergeIntoAction(build, result, listener, true);
+    }
+
+    /**
+     * @param keep false if the caller does not use the given result anymore, so that it needs no copy.
+     */
+    static TestResultAction mergeIntoAction(Run<?, ?> build, TestResult result, TaskListener listener, boolean keep) {
+        TestResultAction action;
+        PendingAction pending = null;
+        synchronized (build) {
+            action = build.getAction(TestResultAction.class);
+            if (action == null) {
+                synchronized (PENDING_ACTIONS) {
+                    pending = PENDING_ACTIONS.get(build);
+                    if (pending == null) {
+                        pending = new PendingAction(new TestResultAction(build));
+                        PENDING_ACTIONS.put(build, pending);
                     }
+                    pending.callers++;
                 }
+                action = pending.action;
             }
-
-            if (appending) {
-                build.save();
-            } else {
-                build.addAction(action);
+        }
+        result.freeze(action);
+        boolean merged = false;
+        try {
+            action.mergeResult(result, listener, keep);
+            merged = true;
+        } finally {
+            if (pending != null) {
+                synchronized (build) {
+                    if (merged && build.getAction(TestResultAction.class) == null) {
+                        build.addAction(action);
+                    }
+                    synchronized (PENDING_ACTIONS) {
+                        if (--pending.callers == 0) {
+                            PENDING_ACTIONS.remove(build);
+                        }
+                    }
+                }
             }
+        }
+        return action;
+    }
+
+    private static final class PendingAction {
+        private final TestResultAction action;
+        private int callers;
+
+        PendingAction(TestResultAction action) {
+            this.action = action;
+        }
+    }
 
-            return action;
+    private static boolean isEmpty(TestResult result) {
+        for (SuiteResult suite : result.getSuites()) {
+            if (!suite.getCases().isEmpty()) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -0,0 +1,217 @@
+package hudson.tasks.junit;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.tasks.test.PipelineTestDetails;
+import jenkins.MasterToSlaveFileCallable;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records the test results of a build while its tests are still running, so that counts and failures can be seen
+ * long before the tests are over.
+ *
+ * <p>
+ * The workspace is watched by a {@link ReportWatcher} on the machine it is on, and every {@link #poll poll} parses
+ * the reports completed since and merges them into the {@link TestResultAction} of the build at once. Merging and
+ * persisting take time proportional to all results recorded so far, so polls are spaced out as results grow, such
+ * that they take at most a fixed share of the time however long the tests run. The reports recorded are tracked as
+ * by {@link JUnitResultArchiver}, so that the {@link #finish final recording}, which parses whatever the watcher
+ * has not handed out yet, does not parse any report twice.
+ */
+public final class LiveTestResults implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Shortest time between two polls, in ms.
+     */
+    public static /* not final */ long INTERVAL = Long.getLong(LiveTestResults.class.getName() + ".interval", 10000);
+
+    /**
+     * How long ago, in ms, a report must have been last modified to be parsed, in addition to having kept its size
+     * since the previous poll.
+     */
+    static /* not final */ long QUIET_PERIOD = Long.getLong(LiveTestResults.class.getName() + ".quietPeriod", 1000);
+
+    /**
+     * Polls are spaced out to at least this many times as long as the last one took.
+     */
+    private static final int SPACING = 20;
+
+    private final String id = UUID.randomUUID().toString();
+    private final String testResults;
+    private final boolean keepLongStdio;
+    private final boolean allowEmptyResults;
+    private final double healthScaleFactor;
+    private final PipelineTestDetails pipelineTestDetails;
+
+    /**
+     * The pattern as expanded when started.
+     */
+    private String expandedTestResults;
+
+    public LiveTestResults(@Nonnull JUnitTask task, @CheckForNull PipelineTestDetails pipelineTestDetails) {
+        this.testResults = task.getTestResults();
+        this.keepLongStdio = task.isKeepLongStdio();
+        this.allowEmptyResults = task.isAllowEmptyResults();
+        this.healthScaleFactor = task.getHealthScaleFactor();
+        this.pipelineTestDetails = pipelineTestDetails;
+    }
+
+    /**
+     * Prepares watching the workspace for reports, which starts with the first {@link #poll poll}.
+     */
+    public void start(Run<?, ?> build, TaskListener listener) throws IOException, InterruptedException {
+        expandedTestResults = build.getEnvironment(listener).expand(testResults);
+        listener.getLogger().println(Messages.LiveTestResults_Watching(expandedTestResults));
+    }
+
+    /**
+     * Records the reports completed since the last poll, if any. The watcher is started by the first poll, and
+     * again if it is gone, as after a restart.
+     *
+     * @return how long to wait before polling again, in ms.
+     */
+    public long poll(Run<?, ?> build, FilePath workspace, TaskListener listener) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        IngestedReports ingested = IngestedReports.load(build, workspace);
+        Polled polled = workspace.act(new Poll(id, expandedTestResults, build.getTimestamp().getTimeInMillis(), start,
+                keepLongStdio, pipelineTestDetails, ingested));
+        ingested.update(polled.ingested);
+        if (polled.result != null && !polled.result.getSuites().isEmpty()) {
+            TestResultAction action = JUnitResultArchiver.mergeIntoAction(build, polled.result, listener, false);
+            action.setHealthScaleFactor(healthScaleFactor);
+            listener.getLogger().println(Messages.LiveTestResults_Recorded(
+                    ingested.getParsed(), action.getTotalCount(), action.getFailCount()));
+        }
+        ingested.save(build);
+        return Math.max(INTERVAL, SPACING * (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Stops watching the workspace, and records the reports not recorded yet, as {@link JUnitResultArchiver} does.
+     *
+     * @return the action of the build, or null if no tests were recorded at all and empty results are allowed.
+     */
+    public TestResultAction finish(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener)
+            throws IOException, InterruptedException {
+        stop(workspace);
+        JUnitTask task = new JUnitTask() {
+            @Override
+            public String getTestResults() {
+                return testResults;
+            }
+
+            @Override
+            public double getHealthScaleFactor() {
+                return healthScaleFactor;
+            }
+
+            @Override
+            public List<TestDataPublisher> getTestDataPublishers() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public boolean isKeepLongStdio() {
+                return keepLongStdio;
+            }
+
+            @Override
+            public boolean isAllowEmptyResults() {
+                return allowEmptyResults;
+            }
+        };
+        return JUnitResultArchiver.parseAndAttach(task, pipelineTestDetails, build, workspace, launcher, listener,
+                IngestedReports.load(build, workspace));
+    }
+
+    /**
+     * Stops watching the workspace.
+     */
+    public void stop(FilePath workspace) throws IOException, InterruptedException {
+        workspace.act(new Unwatch(id));
+    }
+
+    private static final class Polled implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final TestResult result;
+        private final IngestedReports ingested;
+
+        Polled(TestResult result, IngestedReports ingested) {
+            this.result = result;
+            this.ingested = ingested;
+        }
+    }
+
+    private static final class Poll extends MasterToSlaveFileCallable<Polled> {
+        private final String id;
+        private final String testResults;
+        private final long buildTime;
+        private final long nowMaster;
+        private final boolean keepLongStdio;
+        private final PipelineTestDetails pipelineTestDetails;
+        private final IngestedReports ingested;
+
+        Poll(String id, String testResults, long buildTime, long nowMaster, boolean keepLongStdio,
+             PipelineTestDetails pipelineTestDetails, IngestedReports ingested) {
+            this.id = id;
+            this.testResults = testResults;
+            this.buildTime = buildTime;
+            this.nowMaster = nowMaster;
+            this.keepLongStdio = keepLongStdio;
+            this.pipelineTestDetails = pipelineTestDetails;
+            this.ingested = ingested;
+        }
+
+        public Polled invoke(File ws, VirtualChannel channel) throws IOException {
+            long buildTimeOnSlave = buildTime + (System.currentTimeMillis() - nowMaster);
+            List<File> changed = new ArrayList<>();
+            for (File report : ReportWatcher.get(id, ws, testResults).poll(QUIET_PERIOD)) {
+                if (buildTimeOnSlave - 3000/*error margin, as in TestResult.parse*/ > report.lastModified()) {
+                    // left over from an earlier build
+                    continue;
+                }
+                if (ingested.record(report)) {
+                    changed.add(report);
+                }
+            }
+            if (changed.isEmpty()) {
+                return new Polled(null, ingested);
+            }
+            TestResult result = new TestResult(keepLongStdio);
+            try (Closeable readers = SAXReaderPool.open()) {
+                result.parse(buildTimeOnSlave, changed, pipelineTestDetails);
+            }
+            result.tally();
+            return new Polled(result, ingested);
+        }
+    }
+
+    private static final class Unwatch extends MasterToSlaveFileCallable<Void> {
+        private final String id;
+
+        Unwatch(String id) {
+            this.id = id;
+        }
+
+        public Void invoke(File ws, VirtualChannel channel) throws IOException {
+            ReportWatcher.stop(id);
+            return null;
+        }
+    }
+}
@@ -260,6 +260,7 @@ public final class PackageResult extends MetaTabulatedResult implements Comparab
     }
 
     void add(CaseResult r) {
+        resetTestListIndexes();
         String n = r.getSimpleName(), sn = safe(n);
         ClassResult c = getClassResult(sn);
         if (c == null) {
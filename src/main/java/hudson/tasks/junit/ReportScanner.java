@@ -0,0 +1,229 @@
+package hudson.tasks.junit;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the report files matching an Ant pattern in a workspace, like {@link DirectoryScanner} but faster on
+ * large workspaces.
+ *
+ * <p>
+ * Directories that cannot hold a match, such as {@code build/classes} for {@code **&#47;TEST-*.xml} under
+ * {@code build/test-results}, are not entered at all, directories are listed concurrently, and the size and
+ * modification time of every file are read along with the listing, once. The files found answer
+ * {@link File#length()} and {@link File#lastModified()} from these attributes rather than asking the file
+ * system again. Patterns are matched as by {@link DirectoryScanner}, including its default excludes, and
+ * symbolic links are followed, except into their own ancestors.
+ */
+final class ReportScanner {
+
+    /**
+     * Maximum number of directories listed concurrently.
+     */
+    private static final int PARALLELISM = Integer.getInteger(ReportScanner.class.getName() + ".parallelism",
+            Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final File baseDir;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+
+    /**
+     * @param includes comma separated Ant patterns, as taken by {@link hudson.Util#createFileSet(File, String)}.
+     */
+    ReportScanner(File baseDir, String includes) {
+        this.baseDir = baseDir;
+        StringTokenizer tokens = new StringTokenizer(includes, ",");
+        while (tokens.hasMoreTokens()) {
+            this.includes.add(normalize(tokens.nextToken().trim()));
+        }
+        if (this.includes.isEmpty()) {
+            this.includes.add("**");
+        }
+        for (String exclude : DirectoryScanner.getDefaultExcludes()) {
+            this.excludes.add(normalize(exclude));
+        }
+    }
+
+    private static String normalize(String pattern) {
+        pattern = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (pattern.endsWith(File.separator)) {
+            pattern += "**";
+        }
+        return pattern;
+    }
+
+    /**
+     * @return the matching files, sorted by path.
+     */
+    List<File> scan() throws IOException {
+        final ConcurrentLinkedQueue<File> found = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<IOException> failures = new ConcurrentLinkedQueue<>();
+        if (!baseDir.isDirectory()) {
+            return Collections.emptyList();
+        }
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            pool.invoke(new Lister(baseDir.toPath(), "", Collections.emptyList(), found, failures));
+        } finally {
+            pool.shutdown();
+        }
+        if (!failures.isEmpty()) {
+            throw failures.peek();
+        }
+        List<File> files = new ArrayList<>(found);
+        Collections.sort(files, BY_PATH);
+        return files;
+    }
+
+    boolean isIncluded(String path) {
+        for (String include : includes) {
+            if (SelectorUtils.matchPath(include, path, true)) {
+                return !isExcluded(path);
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(String path) {
+        for (String exclude : excludes) {
+            if (SelectorUtils.matchPath(exclude, path, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the given directory can contain included files.
+     */
+    boolean couldHoldIncluded(String path) {
+        for (String exclude : excludes) {
+            String suffix = File.separator + "**";
+            if (exclude.endsWith(suffix)
+                    && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - suffix.length()), path, true)) {
+                return false;
+            }
+        }
+        for (String include : includes) {
+            if (SelectorUtils.matchPatternStart(include, path, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists one directory, and forks the listing of the subdirectories that can hold included files.
+     */
+    private final class Lister extends RecursiveAction {
+        private final Path dir;
+        private final String path;
+        private final List<Object> ancestors;
+        private final ConcurrentLinkedQueue<File> found;
+        private final ConcurrentLinkedQueue<IOException> failures;
+
+        Lister(Path dir, String path, List<Object> ancestors, ConcurrentLinkedQueue<File> found,
+               ConcurrentLinkedQueue<IOException> failures) {
+            this.dir = dir;
+            this.path = path;
+            this.ancestors = ancestors;
+            this.found = found;
+            this.failures = failures;
+        }
+
+        @Override
+        protected void compute() {
+            final List<Lister> subdirectories = new ArrayList<>();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(dir, BasicFileAttributes.class);
+                final List<Object> ancestors = new ArrayList<>(this.ancestors);
+                if (attributes.fileKey() != null) {
+                    if (ancestors.contains(attributes.fileKey())) {
+                        // a link to one of its own ancestors
+                        return;
+                    }
+                    ancestors.add(attributes.fileKey());
+                }
+                Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String name = path.isEmpty() ? file.getFileName().toString()
+                                : path + File.separator + file.getFileName();
+                        if (attrs.isDirectory()) {
+                            if (couldHoldIncluded(name)) {
+                                subdirectories.add(new Lister(file, name, ancestors, found, failures));
+                            }
+                        } else if (attrs.isRegularFile() && isIncluded(name)) {
+                            found.add(new ScannedFile(baseDir, name, attrs));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // unreadable or dangling links, as skipped by DirectoryScanner
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                if (path.isEmpty()) {
+                    failures.add(e);
+                }
+                // otherwise skipped, as by DirectoryScanner
+                return;
+            }
+            invokeAll(subdirectories);
+        }
+    }
+
+    /**
+     * A file found by the scanner, remembering its size and modification time as they were when found.
+     */
+    private static final class ScannedFile extends File {
+        private static final long serialVersionUID = 1L;
+
+        private final long length;
+        private final long lastModified;
+
+        ScannedFile(File baseDir, String path, BasicFileAttributes attributes) {
+            super(baseDir, path);
+            this.length = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+    }
+
+    private static final Comparator<File> BY_PATH = new Comparator<File>() {
+        @Override
+        public int compare(File a, File b) {
+            return a.getPath().compareTo(b.getPath());
+        }
+    };
+}
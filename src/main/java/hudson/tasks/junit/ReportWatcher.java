@@ -0,0 +1,192 @@
+package hudson.tasks.junit;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches a workspace for report files matching an Ant pattern while they are being written, on the machine the
+ * workspace is on.
+ *
+ * <p>
+ * Only the directories that can hold a match, as told by {@link ReportScanner}, are watched, including those
+ * created later. A report is handed out once it has been seen with the same size and modification time twice, and
+ * was last modified some time ago, so that reports still being written are not parsed half way. Watchers are kept
+ * by an ID, so that the master can poll the same watcher with every call.
+ */
+final class ReportWatcher implements Closeable {
+
+    private static final Map<String, ReportWatcher> WATCHERS = new ConcurrentHashMap<>();
+
+    private final Path baseDir;
+    private final ReportScanner scanner;
+    private final WatchService watchService;
+
+    /**
+     * Watched directories, relative to the base directory.
+     */
+    private final Map<WatchKey, String> dirs = new HashMap<>();
+
+    /**
+     * Reports created or modified since handed out, with their size and modification time when last polled, or
+     * null if not polled yet.
+     */
+    private final Map<String, long[]> candidates = new TreeMap<>();
+
+    private ReportWatcher(File baseDir, String includes) throws IOException {
+        this.baseDir = baseDir.toPath();
+        this.scanner = new ReportScanner(baseDir, includes);
+        this.watchService = this.baseDir.getFileSystem().newWatchService();
+        try {
+            register(this.baseDir);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the watcher with the given ID, started with the given base directory and pattern if there is none.
+     */
+    static ReportWatcher get(String id, File baseDir, String includes) throws IOException {
+        synchronized (WATCHERS) {
+            ReportWatcher watcher = WATCHERS.get(id);
+            if (watcher == null) {
+                watcher = new ReportWatcher(baseDir, includes);
+                WATCHERS.put(id, watcher);
+            }
+            return watcher;
+        }
+    }
+
+    /**
+     * Stops the watcher with the given ID, if any.
+     */
+    static void stop(String id) throws IOException {
+        ReportWatcher watcher = WATCHERS.remove(id);
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Watches the given directory and the directories below it that can hold reports, and takes the reports
+     * already in them as candidates.
+     */
+    private void register(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                String path = relativize(d);
+                if (!path.isEmpty() && !scanner.couldHoldIncluded(path)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = d.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                dirs.put(key, path);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String path = relativize(file);
+                if (attrs.isRegularFile() && scanner.isIncluded(path) && !candidates.containsKey(path)) {
+                    candidates.put(path, null);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // unreadable, dangling or looping links, as skipped by ReportScanner
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private String relativize(Path path) {
+        return baseDir.relativize(path).toString();
+    }
+
+    /**
+     * Takes the events since the last call into account, and hands out the reports that are complete.
+     *
+     * @param quietPeriod how long ago, in ms, a report must have been last modified to be complete.
+     * @return the reports to parse, sorted by path.
+     */
+    synchronized List<File> poll(long quietPeriod) throws IOException {
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            String dir = dirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    // events were lost, so look at everything again
+                    register(baseDir);
+                    continue;
+                }
+                String path = dir.isEmpty() ? event.context().toString() : dir + File.separator + event.context();
+                Path file = baseDir.resolve(path);
+                if (Files.isDirectory(file)) {
+                    if (scanner.couldHoldIncluded(path)) {
+                        // reports may have been written before it was watched
+                        register(file);
+                    }
+                } else if (scanner.isIncluded(path)) {
+                    candidates.put(path, null);
+                }
+            }
+            if (!key.reset()) {
+                dirs.remove(key);
+            }
+        }
+
+        List<File> complete = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, long[]>> it = candidates.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, long[]> candidate = it.next();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(baseDir.resolve(candidate.getKey()), BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                it.remove();
+                continue;
+            }
+            long[] seen = {attrs.size(), attrs.lastModifiedTime().toMillis()};
+            long[] last = candidate.getValue();
+            if (last != null && last[0] == seen[0] && last[1] == seen[1] && now - seen[1] >= quietPeriod) {
+                complete.add(new File(baseDir.toFile(), candidate.getKey()));
+                it.remove();
+            } else {
+                candidate.setValue(seen);
+            }
+        }
+        return complete;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
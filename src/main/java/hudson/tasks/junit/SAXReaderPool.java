@@ -0,0 +1,76 @@
+package hudson.tasks.junit;
+
+import org.dom4j.io.SAXReader;
+import org.xml.sax.SAXException;
+
+import java.io.Closeable;
+
+/**
+ * Keeps the {@link SAXReader} parsing reports for reuse by the next report parsed by the same thread.
+ *
+ * <p>
+ * Looking up and configuring a parser costs about as much as parsing a small report, and builds can have tens of
+ * thousands of them. While a thread has {@link #open() opened} the pool, {@link #get()} returns the same
+ * configured reader on every call; otherwise it returns a new one, as before.
+ */
+final class SAXReaderPool {
+
+    private static final ThreadLocal<SAXReader> READERS = new ThreadLocal<SAXReader>();
+
+    private SAXReaderPool() {
+    }
+
+    /**
+     * Reuses readers on this thread until the returned scope is closed. Nested calls share the outer scope.
+     */
+    static Closeable open() {
+        if (READERS.get() != null) {
+            return NOOP;
+        }
+        READERS.set(create());
+        return new Closeable() {
+            @Override
+            public void close() {
+                READERS.remove();
+            }
+        };
+    }
+
+    /**
+     * @return the reader of this thread if the pool is open, otherwise a new reader. Not to be shared with other
+     * threads.
+     */
+    static SAXReader get() {
+        SAXReader reader = READERS.get();
+        return reader != null ? reader : create();
+    }
+
+    private static SAXReader create() {
+        SAXReader saxReader = new SAXReader();
+
+        //source: https://www.owasp.org/index.php/XML_External_Entity_(XXE)_Prevention_Cheat_Sheet => SAXReader
+        // setFeatureQuietly(saxReader, "http://apache.org/xml/features/disallow-doctype-decl", true);
+        // setFeatureQuietly(saxReader, "http://xml.org/sax/features/external-parameter-entities", false);
+
+        // only that seems to let the initial feature of testng namespace being loaded locally
+        setFeatureQuietly(saxReader, "http://xml.org/sax/features/external-general-entities", false);
+
+        saxReader.setEntityResolver(new XMLEntityResolver());
+        return saxReader;
+    }
+
+    private static void setFeatureQuietly(SAXReader reader, String feature, boolean value) {
+        try {
+            reader.setFeature(feature, value);
+        }
+        catch (SAXException ignored) {
+            // ignore and continue in case the feature cannot be changed
+        }
+    }
+
+    private static final Closeable NOOP = new Closeable() {
+        @Override
+        public void close() {
+        }
+    };
+}
@@ -33,7 +33,6 @@ import org.dom4j.io.SAXReader;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
-import org.xml.sax.SAXException;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -162,16 +161,7 @@ public final class SuiteResult implements Serializable {
         List<SuiteResult> r = new ArrayList<SuiteResult>();
 
         // parse into DOM
-        SAXReader saxReader = new SAXReader();
-        
-        //source: https://www.owasp.org/index.php/XML_External_Entity_(XXE)_Prevention_Cheat_Sheet => SAXReader
-        // setFeatureQuietly(saxReader, "http://apache.org/xml/features/disallow-doctype-decl", true);
-        // setFeatureQuietly(saxReader, "http://xml.org/sax/features/external-parameter-entities", false);
-
-        // only that seems to let the initial feature of testng namespace being loaded locally
-        setFeatureQuietly(saxReader, "http://xml.org/sax/features/external-general-entities", false);
-
-        saxReader.setEntityResolver(new XMLEntityResolver());
+        SAXReader saxReader = SAXReaderPool.get();
 
         FileInputStream xmlReportStream = new FileInputStream(xmlReport);
         try {
@@ -186,15 +176,6 @@ public final class SuiteResult implements Serializable {
         return r;
     }
 
-    private static void setFeatureQuietly(SAXReader reader, String feature, boolean value) {
-        try {
-            reader.setFeature(feature, value);
-        }
-        catch (SAXException ignored) {
-            // ignore and continue in case the feature cannot be changed
-        }
-    }
-
     private static void parseSuite(File xmlReport, boolean keepLongStdio, List<SuiteResult> r, Element root,
                                    PipelineTestDetails pipelineTestDetails) throws DocumentException, IOException {
         // nested test suites
@@ -236,7 +217,7 @@ public final class SuiteResult implements Serializable {
 
         // check for test suite time attribute
         if ((this.time = suite.attributeValue("time")) != null) {
-            duration = new TimeToFloat(this.time).parse();
+            duration = TimeToFloat.parse(this.time);
         }
 
         Element ex = suite.element("error");
@@ -0,0 +1,130 @@
+package hudson.tasks.junit;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.tasks.junit.TestResultAction.Data;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.acegisecurity.Authentication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link TestDataPublisher}s of a {@link JUnitTask} over a result that has been recorded.
+ *
+ * <p>
+ * Publishers often walk the whole result, so with {@link #PARALLEL} set they are run concurrently on a pool
+ * shared by all builds, as the user running the build, each over its own copy of the result, since even reading
+ * a result fills in some of its caches. Their data is still returned in the order the publishers are configured
+ * in, and the time each of them took is written to the build log.
+ */
+final class TestDataContributor {
+
+    /**
+     * Set to true to run the publishers of a step concurrently.
+     */
+    static /* not final */ boolean PARALLEL = Boolean.getBoolean(TestDataContributor.class.getName() + ".parallel");
+
+    /**
+     * Maximum number of publishers run concurrently across all builds.
+     */
+    private static final int MAX_THREADS = Integer.getInteger(TestDataContributor.class.getName() + ".maxThreads", 4);
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "TestDataContributor"));
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private TestDataContributor() {
+    }
+
+    /**
+     * @return the data contributed by the publishers, in the order of the publishers, leaving out null data.
+     */
+    static List<Data> contribute(List<TestDataPublisher> publishers, final Run<?, ?> build, final FilePath workspace,
+                                 final Launcher launcher, final TaskListener listener, final TestResult result)
+            throws IOException, InterruptedException {
+        List<Data> data = new ArrayList<>();
+        if (!PARALLEL || publishers.size() < 2) {
+            for (TestDataPublisher tdp : publishers) {
+                Data d = tdp.contributeTestData(build, workspace, launcher, listener, result);
+                if (d != null) {
+                    data.add(d);
+                }
+            }
+            return data;
+        }
+
+        final Authentication authentication = Jenkins.getAuthentication();
+        final TestResultAction action = (TestResultAction) result.getParentAction();
+        List<Future<Data>> futures = new ArrayList<>(publishers.size());
+        try {
+            for (final TestDataPublisher tdp : publishers) {
+                futures.add(EXECUTOR.submit(new Callable<Data>() {
+                    @Override
+                    public Data call() throws Exception {
+                        long start = System.nanoTime();
+                        try (ACLContext context = ACL.as(authentication)) {
+                            TestResult copy = TestResultAction.copy(result);
+                            copy.freeze(action);
+                            return tdp.contributeTestData(build, workspace, launcher, listener, copy);
+                        } finally {
+                            listener.getLogger().println(Messages.JUnitResultArchiver_TestDataContributed(
+                                    tdp.getDescriptor().getDisplayName(),
+                                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                        }
+                    }
+                }));
+            }
+            for (Future<Data> future : futures) {
+                Data d;
+                try {
+                    d = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IOException(cause);
+                }
+                if (d != null) {
+                    data.add(d);
+                }
+            }
+            return data;
+        } finally {
+            // the publishers still running once one failed or the build was aborted are of no use anymore
+            for (Future<Data> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+}
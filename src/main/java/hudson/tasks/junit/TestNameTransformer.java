@@ -2,8 +2,11 @@ package hudson.tasks.junit;
 
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
+import hudson.ExtensionListListener;
 import jenkins.util.JenkinsJVM;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Allow extensions to transform the class/package/method name for JUnit test
  * cases which will be displayed on the test result page.
@@ -34,7 +37,7 @@ public abstract class TestNameTransformer implements ExtensionPoint {
             return name;
         }
         String transformedName = name;
-        for (TestNameTransformer transformer : all()) {
+        for (TestNameTransformer transformer : snapshot().transformers) {
             transformedName = transformer.transformName(transformedName);
         }
         return transformedName;
@@ -43,4 +46,63 @@ public abstract class TestNameTransformer implements ExtensionPoint {
     public static ExtensionList<TestNameTransformer> all() {
         return ExtensionList.lookup(TestNameTransformer.class);
     }
+
+    /**
+     * Changes whenever the transformers do, so that callers can cache transformed names.
+     */
+    static int generation() {
+        return JenkinsJVM.isJenkinsJVM() ? snapshot().generation : 0;
+    }
+
+    private static volatile Snapshot snapshot;
+
+    private static int lastGeneration;
+
+    /**
+     * Number of changes to the extension list, taken before a snapshot to tell whether it is still current.
+     */
+    private static final AtomicInteger changes = new AtomicInteger();
+
+    /**
+     * The transformers as of the last change to the extension list, rather than looking them up for each of the
+     * many names of a result.
+     */
+    private static Snapshot snapshot() {
+        ExtensionList<TestNameTransformer> all = all();
+        Snapshot s = snapshot;
+        if (s != null && s.extensions == all && s.changes == changes.get()) {
+            return s;
+        }
+        synchronized (TestNameTransformer.class) {
+            s = snapshot;
+            if (s != null && s.extensions == all && s.changes == changes.get()) {
+                return s;
+            }
+            if (s == null || s.extensions != all) {
+                all.addListener(new ExtensionListListener() {
+                    @Override
+                    public void onChange() {
+                        changes.incrementAndGet();
+                    }
+                });
+            }
+            s = new Snapshot(all, ++lastGeneration);
+            snapshot = s;
+            return s;
+        }
+    }
+
+    private static final class Snapshot {
+        private final ExtensionList<TestNameTransformer> extensions;
+        private final TestNameTransformer[] transformers;
+        private final int generation;
+        private final int changes;
+
+        Snapshot(ExtensionList<TestNameTransformer> extensions, int generation) {
+            this.changes = TestNameTransformer.changes.get();
+            this.extensions = extensions;
+            this.transformers = extensions.toArray(new TestNameTransformer[0]);
+            this.generation = generation;
+        }
+    }
 }
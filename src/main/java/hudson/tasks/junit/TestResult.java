@@ -31,26 +31,35 @@ import hudson.tasks.test.PipelineTestDetails;
 import hudson.tasks.test.PipelineBlockWithTests;
 import hudson.tasks.test.MetaTabulatedResult;
 import hudson.tasks.test.TabulatedResult;
+import hudson.tasks.test.TestListIndex;
 import hudson.tasks.test.TestObject;
+import hudson.util.HttpResponses;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.apache.tools.ant.DirectoryScanner;
 import org.dom4j.DocumentException;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.Exported;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 /**
@@ -104,6 +113,21 @@ public final class TestResult extends MetaTabulatedResult {
      */
     private transient List<CaseResult> failedTests;
 
+    /**
+     * Whether the status of all test cases has been classified against the previous build.
+     */
+    private transient volatile boolean statusesClassified;
+
+    /**
+     * Default maximum number of tests listed per cause by {@link #doCauses(StaplerRequest)}.
+     */
+    public static final int CAUSE_TESTS_LIMIT = 100;
+
+    /**
+     * Failed tests grouped by cause, computed on first use.
+     */
+    private transient volatile List<FailureCluster> failuresByCause;
+
     private final boolean keepLongStdio;
 
     /**
@@ -474,6 +498,79 @@ public final class TestResult extends MetaTabulatedResult {
         return failedTests;
     }
 
+    /**
+     * Groups the failed tests by the {@link CaseResult#getFailureSignature() signature} of their failure, so that
+     * tests failing for the same cause are listed together.
+     *
+     * @return the groups, largest first.
+     */
+    public List<FailureCluster> getFailuresByCause() {
+        List<FailureCluster> clusters = failuresByCause;
+        if (clusters == null) {
+            clusters = FailureCluster.of(failedTests == null ? Collections.<CaseResult>emptyList() : failedTests);
+            failuresByCause = clusters;
+        }
+        return clusters;
+    }
+
+    /**
+     * Returns the failed tests grouped by cause as JSON, see {@link #getFailuresByCause()}. Takes the query
+     * parameter {@code limit}, the maximum number of tests listed per cause.
+     */
+    public HttpResponse doCauses(StaplerRequest req) {
+        int limit;
+        try {
+            limit = Math.max(0, parseInt(req.getParameter("limit"), CAUSE_TESTS_LIMIT));
+        } catch (IllegalArgumentException e) {
+            return HttpResponses.error(StaplerResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+        JSONArray causes = new JSONArray();
+        for (FailureCluster cluster : getFailuresByCause()) {
+            JSONArray tests = new JSONArray();
+            for (CaseResult c : cluster.getTests()) {
+                if (tests.size() == limit) {
+                    break;
+                }
+                JSONObject test = new JSONObject();
+                test.put("name", c.getFullName());
+                test.put("url", c.getRelativePathFrom(this));
+                tests.add(test);
+            }
+            JSONObject cause = new JSONObject();
+            cause.put("signature", cluster.getSignature());
+            cause.put("summary", cluster.getSummary());
+            cause.put("count", cluster.getCount());
+            cause.put("tests", tests);
+            causes.add(cause);
+        }
+        JSONObject json = new JSONObject();
+        json.put("causes", causes);
+        return HttpResponses.okJSON(json);
+    }
+
+    /**
+     * Collects the passed and skipped tests for their {@link TestListIndex} without filling the lists of
+     * {@link #getPassedTests()} and {@link #getSkippedTests()}, so that the index, which keeps the tests for as
+     * long as this result keeps it, holds the only copy.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Collection<CaseResult> getTests(String status) {
+        boolean passed = status.equals("passed");
+        if (!passed && !status.equals("skipped")) {
+            return (Collection<CaseResult>) super.getTests(status);
+        }
+        List<CaseResult> tests = new ArrayList<CaseResult>();
+        for (SuiteResult s : suites) {
+            for (CaseResult cr : s.getCases()) {
+                if (passed ? cr.isPassed() : cr.isSkipped()) {
+                    tests.add(cr);
+                }
+            }
+        }
+        return tests;
+    }
+
     /**
      * Gets the "children" of this test result that passed
      *
@@ -634,6 +731,88 @@ public final class TestResult extends MetaTabulatedResult {
         }
     }
 
+    /**
+     * Streams the changes between the result of another build of the same job and this result as JSON,
+     * see {@link TestResultDiff}.
+     *
+     * Takes the query parameter {@code against}, the number of the build to compare with, usually an older one.
+     */
+    public void doDiff(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        int against;
+        try {
+            against = parseInt(req.getParameter("against"), -1);
+        } catch (IllegalArgumentException e) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (against < 0) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, "Missing or negative build number: against");
+            return;
+        }
+        Run<?,?> run = getRun();
+        Run<?,?> other = run != null ? run.getParent().getBuildByNumber(against) : null;
+        TestResultAction action = other != null ? other.getAction(TestResultAction.class) : null;
+        TestResult base = action != null ? action.getResult() : null;
+        if (base == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND, "No test result in build #" + against);
+            return;
+        }
+        rsp.setContentType("application/json;charset=UTF-8");
+        TestResultDiff.writeJson(base, this, rsp.getWriter());
+    }
+
+    /**
+     * Streams the test cases of the build from the stored result, see {@link TestResultExport}.
+     * Takes the query parameters {@code format} ({@code json} or {@code xml}), {@code fields} and {@code status}
+     * (comma separated), {@code cursor} and {@code limit}.
+     */
+    public void doExport(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        TestResultFile stored = parentAction instanceof TestResultAction && parentAction.run != null
+                ? ((TestResultAction) parentAction).getDataFile() : null;
+        if (stored == null || !stored.exists()) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND, "No stored test result");
+            return;
+        }
+        TestResultExport export;
+        try {
+            export = new TestResultExport(splitParameter(req, "fields"), splitParameter(req, "status"),
+                    parseInt(req.getParameter("cursor"), 0), parseInt(req.getParameter("limit"), TestResultExport.DEFAULT_LIMIT));
+        } catch (IllegalArgumentException e) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        TestResultExport.Format format = "xml".equals(req.getParameter("format"))
+                ? TestResultExport.Format.XML : TestResultExport.Format.JSON;
+        rsp.setContentType(format == TestResultExport.Format.XML ? "application/xml;charset=UTF-8" : "application/json;charset=UTF-8");
+        try (InputStream in = stored.open()) {
+            export.write(in, rsp.getWriter(), format);
+        }
+    }
+
+    private static Set<String> splitParameter(StaplerRequest req, String name) {
+        Set<String> values = new HashSet<>();
+        String value = req.getParameter(name);
+        if (value != null) {
+            for (String v : value.split(",")) {
+                if (!v.trim().isEmpty()) {
+                    values.add(v.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
     public PackageResult byPackage(String packageName) {
         return byPackages.get(packageName);
     }
@@ -642,6 +821,74 @@ public final class TestResult extends MetaTabulatedResult {
         return suitesByName.get(name);
     }
 
+    /**
+     * Classifies the {@link CaseResult#getStatus() status} of all test cases at once.
+     *
+     * <p>
+     * The previous result is looked up once, and each suite and case is joined with its counterpart by
+     * (transformed) name, instead of every case looking up the previous result on its own each time its status
+     * is rendered. The statuses are kept with the test cases for as long as this result is in memory.
+     */
+    synchronized void classifyStatuses() {
+        if (statusesClassified) {
+            return;
+        }
+        hudson.tasks.test.TestResult pr = getPreviousResult();
+        TestResult previous = pr instanceof TestResult ? (TestResult) pr : null;
+        for (SuiteResult s : suites) {
+            SuiteResult previousSuite = previous != null ? previous.getSuite(s.getName()) : null;
+            for (CaseResult c : s.getCases()) {
+                c.classifyStatus(previousSuite != null ? previousSuite.getCase(c.getTransformedTestName()) : null);
+            }
+        }
+        statusesClassified = true;
+    }
+
+    /**
+     * Drops the statuses classified so far, to be classified again on next use.
+     */
+    private synchronized void resetStatuses() {
+        statusesClassified = false;
+        for (SuiteResult s : suites) {
+            for (CaseResult c : s.getCases()) {
+                c.resetStatus();
+            }
+        }
+    }
+
+    /**
+     * Records since which build each failing test case has been failing.
+     *
+     * <p>
+     * Called once when the result is recorded, before it is frozen. All failing and skipped test cases are joined
+     * with the previous result in one pass, which is loaded at most once and only if some test case is not
+     * passing. As the previous result has recorded its own test cases the same way, no older build is ever looked
+     * at, no matter how long a test has been failing. Skipped test cases carry a streak on without starting one.
+     *
+     * @param number the number of the build this result is recorded for.
+     * @param previous the test result action of the previous build, if any.
+     */
+    void recordFailedSince(int number, @CheckForNull TestResultAction previous) {
+        TestResult previousResult = null;
+        boolean previousLoaded = false;
+        for (SuiteResult s : suites) {
+            SuiteResult previousSuite = null;
+            for (CaseResult c : s.getCases()) {
+                if (!c.needsFailedSince()) {
+                    continue;
+                }
+                if (!previousLoaded) {
+                    previousResult = previous != null ? previous.getResult() : null;
+                    previousLoaded = true;
+                }
+                if (previousSuite == null && previousResult != null) {
+                    previousSuite = previousResult.getSuite(s.getName());
+                }
+                c.recordFailedSince(previousSuite != null ? previousSuite.getCase(c.getTransformedTestName()) : null, number);
+            }
+        }
+    }
+
     @Nonnull
     public TestResult getResultByNode(@Nonnull String nodeId) {
         return getResultByNodes(Collections.singletonList(nodeId));
@@ -679,6 +926,9 @@ public final class TestResult extends MetaTabulatedResult {
      */
     @Override
     public void tally() {
+        resetStatuses();
+        failuresByCause = null;
+        resetTestListIndexes();
         /// Empty out data structures
         // TODO: free children? memmory leak?
         suitesByName = new HashMap<String,SuiteResult>();
@@ -732,6 +982,9 @@ public final class TestResult extends MetaTabulatedResult {
      */
     public void freeze(TestResultAction parent) {
         this.parentAction = parent;
+        resetStatuses();
+        failuresByCause = null;
+        resetTestListIndexes();
         if(suitesByName==null) {
             // freeze for the first time
             suitesByName = new HashMap<String,SuiteResult>();
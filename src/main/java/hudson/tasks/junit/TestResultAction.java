@@ -26,7 +26,6 @@ package hudson.tasks.junit;
 import com.thoughtworks.xstream.XStream;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Util;
-import hudson.XmlFile;
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
 import hudson.model.BuildListener;
@@ -34,19 +33,35 @@ import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.test.AbstractTestResultAction;
+import hudson.tasks.test.PackageTrie;
 import hudson.tasks.test.TestObject;
 import hudson.tasks.test.TestResultProjectAction;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.HeapSpaceStringConverter;
+import hudson.util.NamingThreadFactory;
 import hudson.util.XStream2;
 import org.kohsuke.stapler.StaplerProxy;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
 import java.lang.ref.WeakReference;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +81,18 @@ import jenkins.tasks.SimpleBuildStep;
 public class TestResultAction extends AbstractTestResultAction<TestResultAction> implements StaplerProxy, SimpleBuildStep.LastBuildAction {
     private transient WeakReference<TestResult> result;
 
+    /**
+     * Number of results set so far, and of the one currently stored, so that a result that took longer to
+     * write does not replace a later one.
+     */
+    private transient long lastGeneration, committedGeneration;
+
+    /**
+     * Results waiting to be merged, and the lock held while merging them.
+     */
+    private transient List<Merge> pendingMerges;
+    private transient Object mergeLock;
+
     // Hudson < 1.25 didn't set these fields, so use Integer
     // so that we can distinguish between 0 tests vs not-computed-yet.
     private int failCount;
@@ -87,6 +114,14 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
         setResult(result, listener);
     }
 
+    /**
+     * Creates an action without any result, neither in memory nor on disk, to be {@link #mergeResult merged}
+     * into before it is attached to the build.
+     */
+    TestResultAction(Run owner) {
+        super(owner);
+    }
+
     @Deprecated
     public TestResultAction(TestResult result, BuildListener listener) {
         this((Run) null, result, listener);
@@ -106,25 +141,60 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
     /**
      * Overwrites the {@link TestResult} by a new data set.
      *
+     * <p>
+     * The result is serialized without holding the lock of this action, which only guards replacing the
+     * persisted file and the result in memory. If results are set concurrently, the one set last wins.
+     *
      * @since 1.2-beta-1
      */
-    public synchronized void setResult(TestResult result, TaskListener listener) {
+    public void setResult(TestResult result, TaskListener listener) {
+        if (run != null) {
+            result.recordFailedSince(run.getNumber(), getPreviousResult());
+        }
         result.freeze(this);
 
-        totalCount = result.getTotalCount();
-        failCount = result.getFailCount();
-        skipCount = result.getSkipCount();
+        long generation;
+        synchronized (this) {
+            generation = ++lastGeneration;
+        }
 
+        TestResultFile.Staged staged = null;
         if (run != null) {
             // persist the data
             try {
-                getDataFile().write(result);
+                staged = getDataFile().stage(result);
             } catch (IOException e) {
                 e.printStackTrace(listener.fatalError("Failed to save the JUnit test result"));
             }
         }
+        PackageTrie.Staged packages = stagePackageTrie(result);
 
-        this.result = new WeakReference<TestResult>(result);
+        synchronized (this) {
+            try {
+                if (generation < committedGeneration) {
+                    // a later result was set while this one was being written
+                    packages.discard();
+                    if (staged != null) {
+                        staged.discard();
+                    }
+                    return;
+                }
+                if (staged != null) {
+                    staged.commit();
+                }
+            } catch (IOException e) {
+                e.printStackTrace(listener.fatalError("Failed to save the JUnit test result"));
+            }
+            committedGeneration = generation;
+
+            totalCount = result.getTotalCount();
+            failCount = result.getFailCount();
+            skipCount = result.getSkipCount();
+            recordPackageTrie(packages);
+
+            this.result = new WeakReference<TestResult>(result);
+        }
+        invalidateTrends();
     }
 
     @Deprecated
@@ -132,22 +202,35 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
         setResult(result, (TaskListener) listener);
     }
 
-    private XmlFile getDataFile() {
-        return new XmlFile(XSTREAM, new File(run.getRootDir(), "junitResult.xml"));
+    /**
+     * Uses the size of the persisted result, which is known without loading it.
+     */
+    @Override
+    public long getResultSizeEstimate() {
+        if (run == null) {
+            return super.getResultSizeEstimate();
+        }
+        return getDataFile().getUncompressedLength();
     }
 
-    public synchronized TestResult getResult() {
-        TestResult r;
-        if (result == null) {
-            r = load();
-            result = new WeakReference<TestResult>(r);
-        }
-        else {
-            r = result.get();
-        }
+    TestResultFile getDataFile() {
+        return new TestResultFile(XSTREAM, run.getRootDir());
+    }
 
+    public synchronized TestResult getResult() {
+        TestResult r = result != null ? result.get() : null;
         if (r == null) {
-            r = load();
+            try {
+                r = load();
+            } catch (IOException e) {
+                r = new TestResult();   // return a dummy
+                r.freeze(this);
+                if (isInterruption(e)) {
+                    // not remembered, so that the result is read again rather than shown as empty from now on
+                    return r;
+                }
+                logger.log(Level.WARNING, "Failed to load " + getDataFile(), e);
+            }
             result = new WeakReference<TestResult>(r);
         }
         if (totalCount == null) {
@@ -207,18 +290,24 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
     /**
      * Loads a {@link TestResult} from disk.
      */
-    private TestResult load() {
-        TestResult r;
-        try {
-            r = (TestResult) getDataFile().read();
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Failed to load " + getDataFile(), e);
-            r = new TestResult();   // return a dummy
-        }
+    private TestResult load() throws IOException {
+        TestResult r = (TestResult) getDataFile().read();
         r.freeze(this);
         return r;
     }
 
+    /**
+     * @return whether reading failed because the reading thread was interrupted, as when its channel was closed.
+     */
+    private static boolean isInterruption(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof ClosedByInterruptException || t instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+
     /**
      * A method to get {@link TestResult} object if it is already loaded with data and if it has been GC'ed
      * then first load the {@link TestResult} object with data, create a weak reference to it and return it.
@@ -279,11 +368,128 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
 
     /**
      * Merges an additional test result into this one.
+     *
+     * <p>
+     * The result is copied, so that the caller keeps a result no one else changes, as for its
+     * {@link TestDataPublisher}s, and the result of this action is never one a caller still holds. Callers that
+     * do not use their result anymore have it merged as it is. Results merged
+     * concurrently, such as by parallel Pipeline branches, are queued, and whichever caller gets to merge first
+     * merges and persists all of them at once. Every caller returns once its result has been merged, or throws
+     * what failed merging it.
      */
     public void mergeResult(TestResult additionalResult, TaskListener listener) {
-        TestResult original = getResult();
-        original.merge(additionalResult);
-        setResult(original, listener);
+        mergeResult(additionalResult, listener, true);
+    }
+
+    /**
+     * @param keep false if the caller does not use the given result anymore, which is then merged as it is rather
+     *             than copied.
+     */
+    void mergeResult(TestResult additionalResult, TaskListener listener, boolean keep) {
+        Merge merge = new Merge(keep ? copy(additionalResult) : additionalResult);
+        synchronized (this) {
+            if (pendingMerges == null) {
+                pendingMerges = new ArrayList<Merge>();
+                mergeLock = new Object();
+            }
+            pendingMerges.add(merge);
+        }
+        synchronized (mergeLock) {
+            if (!merge.done) {
+                List<Merge> merges;
+                synchronized (this) {
+                    merges = pendingMerges;
+                    pendingMerges = new ArrayList<Merge>();
+                }
+                try {
+                    // nothing recorded yet for an action created empty, so nothing to load
+                    TestResult original = run != null && !getDataFile().exists() ? new TestResult() : getResult();
+                    for (Merge m : merges) {
+                        original.merge(m.result);
+                    }
+                    setResult(original, listener);
+                } catch (RuntimeException | Error e) {
+                    for (Merge m : merges) {
+                        m.failure = e;
+                    }
+                } finally {
+                    for (Merge m : merges) {
+                        m.done = true;
+                    }
+                }
+            }
+        }
+        if (merge.failure instanceof RuntimeException) {
+            throw (RuntimeException) merge.failure;
+        }
+        if (merge.failure instanceof Error) {
+            throw (Error) merge.failure;
+        }
+    }
+
+    /**
+     * @return a deep copy of the given result, sharing no suites or cases with it.
+     */
+    static TestResult copy(final TestResult result) {
+        // streamed from a thread serializing the result to the one reading it back, so that it is never held as text
+        final PipedOutputStream out = new PipedOutputStream();
+        Future<?> writing = null;
+        try {
+            TestResult copy;
+            try (InputStream in = new PipedInputStream(out, COPY_BUFFER_SIZE)) {
+                writing = COPIER.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        try (Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                            XSTREAM.toXML(result, w);
+                        }
+                        return null;
+                    }
+                });
+                copy = (TestResult) XSTREAM.fromXML(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                // the pipe is closed by now, so the serializing thread is done, and its failure tells more if it came first
+                if (writing != null) {
+                    try {
+                        writing.get();
+                    } catch (ExecutionException x) {
+                        if (x.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) x.getCause();
+                        }
+                    }
+                }
+                throw e;
+            }
+            writing.get();
+            return copy;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to copy the test result", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to copy the test result", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while copying the test result", e);
+        }
+    }
+
+    /**
+     * A result waiting to be merged. Only changed while holding the merge lock.
+     */
+    private static final class Merge {
+        private final TestResult result;
+        private boolean done;
+        private Throwable failure;
+
+        Merge(TestResult result) {
+            this.result = result;
+        }
     }
 
     /**
@@ -316,6 +522,14 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
 
     private static final XStream XSTREAM = new XStream2();
 
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Serializes the results being {@link #copy copied}, one thread per copy.
+     */
+    private static final ExecutorService COPIER = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "TestResultAction copy"));
+
     static {
         XSTREAM.alias("result", TestResult.class);
         XSTREAM.alias("suite", SuiteResult.class);
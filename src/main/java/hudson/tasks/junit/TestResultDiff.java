@@ -0,0 +1,295 @@
+package hudson.tasks.junit;
+
+import net.sf.json.util.JSONUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Differences between the test results of two builds: new failures, fixes, added and removed tests, and tests
+ * that got considerably slower.
+ *
+ * <p>
+ * Both results are joined by a sorted merge over the transformed full names of their test cases, so comparing
+ * two results of n test cases takes O(n log n) time. In {@link #compare(TestResult, TestResult, Visitor) streaming
+ * mode} the changes are handed over one by one as the merge finds them, so nothing but the two sorted arrays of
+ * names is held in memory, whatever the number of changes.
+ */
+public final class TestResultDiff {
+
+    /**
+     * A test that passed before must take this many times longer to be reported as {@link Type#SLOWER}.
+     */
+    static final double SLOWER_FACTOR = Double.parseDouble(
+            System.getProperty(TestResultDiff.class.getName() + ".slowerFactor", "2"));
+
+    /**
+     * A test must take at least this many seconds longer to be reported as {@link Type#SLOWER}.
+     */
+    static final double SLOWER_MIN_SECONDS = Double.parseDouble(
+            System.getProperty(TestResultDiff.class.getName() + ".slowerMinSeconds", "1"));
+
+    public enum Type {
+        /**
+         * Failed in the compared build but not in the base build.
+         */
+        NEW_FAILURE,
+        /**
+         * Failed in the base build and passed in the compared build.
+         */
+        FIXED,
+        /**
+         * Only in the compared build.
+         */
+        ADDED,
+        /**
+         * Only in the base build.
+         */
+        REMOVED,
+        /**
+         * Passed in both builds, but took considerably longer in the compared build.
+         */
+        SLOWER
+    }
+
+    /**
+     * One test that changed between the two builds.
+     */
+    public static final class Change {
+        private final Type type;
+        private final String name;
+        private final CaseResult base, target;
+
+        Change(Type type, String name, CaseResult base, CaseResult target) {
+            this.type = type;
+            this.name = name;
+            this.base = base;
+            this.target = target;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the full name of the test, with its test name transformed.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the test in the base build, null if {@link Type#ADDED}.
+         */
+        @CheckForNull
+        public CaseResult getBase() {
+            return base;
+        }
+
+        /**
+         * @return the test in the compared build, null if {@link Type#REMOVED}.
+         */
+        @CheckForNull
+        public CaseResult getTarget() {
+            return target;
+        }
+    }
+
+    /**
+     * Receives the changes in the order of the names of the tests.
+     */
+    public interface Visitor {
+        void visit(Change change) throws IOException;
+    }
+
+    private final Map<Type, List<Change>> changes = new EnumMap<>(Type.class);
+
+    private TestResultDiff() {
+        for (Type type : Type.values()) {
+            changes.put(type, new ArrayList<Change>());
+        }
+    }
+
+    /**
+     * Compares two results and collects all changes.
+     *
+     * @param base   the result to compare with, usually of an older build.
+     * @param target the result to compare.
+     */
+    public static TestResultDiff compare(@Nonnull TestResult base, @Nonnull TestResult target) {
+        final TestResultDiff diff = new TestResultDiff();
+        try {
+            compare(base, target, new Visitor() {
+                public void visit(Change change) {
+                    diff.changes.get(change.getType()).add(change);
+                }
+            });
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return diff;
+    }
+
+    /**
+     * Compares two results, handing over each change as soon as it is found.
+     *
+     * @param base   the result to compare with, usually of an older build.
+     * @param target the result to compare.
+     */
+    public static void compare(@Nonnull TestResult base, @Nonnull TestResult target, @Nonnull Visitor visitor) throws IOException {
+        Entry[] before = sorted(base);
+        Entry[] after = sorted(target);
+        int i = 0, j = 0;
+        while (i < before.length || j < after.length) {
+            int c = i == before.length ? 1 : j == after.length ? -1 : before[i].name.compareTo(after[j].name);
+            if (c < 0) {
+                visitor.visit(new Change(Type.REMOVED, before[i].name, before[i].test, null));
+                i++;
+            } else if (c > 0) {
+                visitor.visit(new Change(Type.ADDED, after[j].name, null, after[j].test));
+                j++;
+            } else {
+                Type type = classify(before[i].test, after[j].test);
+                if (type != null) {
+                    visitor.visit(new Change(type, after[j].name, before[i].test, after[j].test));
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    @CheckForNull
+    private static Type classify(CaseResult base, CaseResult target) {
+        if (target.isFailed()) {
+            return base.isFailed() ? null : Type.NEW_FAILURE;
+        }
+        if (base.isFailed()) {
+            return target.isPassed() ? Type.FIXED : null;
+        }
+        if (base.isPassed() && target.isPassed()) {
+            float before = base.getDuration(), after = target.getDuration();
+            if (after > before * SLOWER_FACTOR && after - before >= SLOWER_MIN_SECONDS) {
+                return Type.SLOWER;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the changes between two results as JSON, as they are found.
+     */
+    public static void writeJson(@Nonnull TestResult base, @Nonnull TestResult target, @Nonnull final Writer w) throws IOException {
+        final int[] counts = new int[Type.values().length];
+        w.write("{\"changes\":[");
+        compare(base, target, new Visitor() {
+            public void visit(Change change) throws IOException {
+                if (total(counts) > 0) {
+                    w.write(',');
+                }
+                counts[change.getType().ordinal()]++;
+                w.write("{\"type\":");
+                w.write(JSONUtils.quote(change.getType().name()));
+                w.write(",\"name\":");
+                w.write(JSONUtils.quote(change.getName()));
+                if (change.getBase() != null) {
+                    w.write(",\"baseDuration\":");
+                    w.write(Float.toString(change.getBase().getDuration()));
+                }
+                if (change.getTarget() != null) {
+                    w.write(",\"duration\":");
+                    w.write(Float.toString(change.getTarget().getDuration()));
+                }
+                w.write('}');
+            }
+        });
+        w.write("],\"counts\":{");
+        for (Type type : Type.values()) {
+            if (type.ordinal() > 0) {
+                w.write(',');
+            }
+            w.write(JSONUtils.quote(type.name()));
+            w.write(':');
+            w.write(Integer.toString(counts[type.ordinal()]));
+        }
+        w.write("}}");
+        w.flush();
+    }
+
+    private static int total(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public List<Change> getNewFailures() {
+        return getChanges(Type.NEW_FAILURE);
+    }
+
+    public List<Change> getFixed() {
+        return getChanges(Type.FIXED);
+    }
+
+    public List<Change> getAdded() {
+        return getChanges(Type.ADDED);
+    }
+
+    public List<Change> getRemoved() {
+        return getChanges(Type.REMOVED);
+    }
+
+    public List<Change> getSlower() {
+        return getChanges(Type.SLOWER);
+    }
+
+    public List<Change> getChanges(Type type) {
+        return Collections.unmodifiableList(changes.get(type));
+    }
+
+    /**
+     * A test case along with its name, computed once rather than on every comparison of the sort.
+     */
+    private static final class Entry {
+        private final String name;
+        private final CaseResult test;
+
+        Entry(CaseResult test) {
+            this.name = test.getClassName() + '.' + test.getTransformedTestName();
+            this.test = test;
+        }
+    }
+
+    private static final Comparator<Entry> BY_NAME = new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+            return a.name.compareTo(b.name);
+        }
+    };
+
+    private static Entry[] sorted(TestResult result) {
+        int size = 0;
+        for (SuiteResult s : result.getSuites()) {
+            size += s.getCases().size();
+        }
+        Entry[] entries = new Entry[size];
+        int i = 0;
+        for (SuiteResult s : result.getSuites()) {
+            for (CaseResult c : s.getCases()) {
+                entries[i++] = new Entry(c);
+            }
+        }
+        // stable, so tests of the same name, e.g. in different stages, are paired in the order they were recorded
+        Arrays.parallelSort(entries, BY_NAME);
+        return entries;
+    }
+}
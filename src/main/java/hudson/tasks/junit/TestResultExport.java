@@ -0,0 +1,370 @@
+package hudson.tasks.junit;
+
+import net.sf.json.util.JSONUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exports the test cases of a build page by page, reading them one by one from the stored
+ * {@code junitResult.xml} and writing them out as they are read.
+ *
+ * <p>
+ * Unlike the remote API, which serializes the whole loaded {@link TestResult} with the standard output of
+ * every test, this never holds more than one test case in memory, only reads the text of the fields asked for,
+ * and can be restricted to failed, skipped or passed tests. Pages are addressed by a cursor, the position of a
+ * test case in the stored result, which each page returns for the next one.
+ */
+public final class TestResultExport {
+
+    public enum Format {
+        JSON, XML
+    }
+
+    /**
+     * All fields of a test case that can be selected.
+     */
+    public static final List<String> CASE_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "className", "name", "duration", "status", "failedSince", "skippedMessage", "errorDetails",
+            "errorStackTrace", "stdout", "stderr"));
+
+    /**
+     * Fields of a test case exported when none are selected, all but the potentially large ones.
+     */
+    public static final List<String> DEFAULT_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "className", "name", "duration", "status", "failedSince"));
+
+    /**
+     * Fields of a suite exported along with its first exported test case.
+     */
+    private static final Set<String> SUITE_FIELDS = new HashSet<>(Arrays.asList(
+            "name", "file", "duration", "timestamp", "id", "nodeId"));
+
+    public static final int DEFAULT_LIMIT = 1000;
+
+    private final Set<String> fields;
+    private final Set<String> statuses;
+    private final int cursor;
+    private final int limit;
+
+    /**
+     * @param fields   the fields of each test case to export, {@link #DEFAULT_FIELDS} if empty.
+     *                 {@code stdout} and {@code stderr} also export the output of the suites.
+     * @param statuses {@code passed}, {@code failed} and/or {@code skipped}, all test cases if empty.
+     * @param cursor   the position of the first test case to export, 0 or as returned by the previous page.
+     * @param limit    the maximum number of test cases to export.
+     */
+    public TestResultExport(Set<String> fields, Set<String> statuses, int cursor, int limit) {
+        for (String field : fields) {
+            if (!CASE_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field + ", expected one of " + CASE_FIELDS);
+            }
+        }
+        this.fields = fields.isEmpty() ? new HashSet<>(DEFAULT_FIELDS) : fields;
+        this.statuses = new HashSet<>();
+        for (String status : statuses) {
+            this.statuses.add(status.toLowerCase(Locale.ENGLISH));
+        }
+        this.cursor = Math.max(0, cursor);
+        this.limit = Math.max(0, limit);
+    }
+
+    /**
+     * Streams the test cases of the given stored result.
+     *
+     * @param in  the stored {@code junitResult.xml}.
+     * @param out where to write the export to.
+     */
+    public void write(InputStream in, Writer out, Format format) throws IOException {
+        Output output = format == Format.XML ? new XmlOutput(out) : new JsonOutput(out);
+        try {
+            XMLStreamReader r = newInputFactory().createXMLStreamReader(in);
+            try {
+                output.start();
+                Integer next = export(r, output);
+                output.end(next);
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to export the test result", e);
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the cursor of the next page, or null if this was the last one.
+     */
+    private Integer export(XMLStreamReader r, Output output) throws XMLStreamException, IOException {
+        int position = 0;
+        int exported = 0;
+        Map<String, String> suite = null;
+        boolean suiteStarted = false;
+        int depth = 0;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (depth == 2 && r.getLocalName().equals("suite")) {
+                    if (suiteStarted) {
+                        output.endSuite();
+                    }
+                    suite = null;
+                    suiteStarted = false;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            depth++;
+            String name = r.getLocalName();
+            if (depth == 3 && name.equals("suite")) {
+                suite = new LinkedHashMap<>();
+            } else if (depth == 4 && suite != null && !name.equals("cases")) {
+                if (SUITE_FIELDS.contains(name) || isStdio(name) && fields.contains(name)) {
+                    suite.put(name, r.getElementText());
+                } else {
+                    skip(r);
+                }
+                depth--;
+            } else if (depth == 5 && suite != null && name.equals("case")) {
+                if (position++ < cursor) {
+                    skip(r);
+                } else {
+                    Map<String, String> c = readCase(r);
+                    if (statuses.isEmpty() || statuses.contains(c.get("status"))) {
+                        if (exported == limit) {
+                            return position - 1;
+                        }
+                        if (!suiteStarted) {
+                            output.startSuite(suite);
+                            suiteStarted = true;
+                        }
+                        output.writeCase(c);
+                        exported++;
+                    }
+                }
+                depth--;
+            } else if (depth > 2 && !(depth == 4 && name.equals("cases"))) {
+                // anything else below the suites, like the fields of the result
+                skip(r);
+                depth--;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the selected fields of a test case, and its status.
+     */
+    private Map<String, String> readCase(XMLStreamReader r) throws XMLStreamException {
+        Map<String, String> c = new HashMap<>();
+        boolean skipped = false, failed = false;
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = r.getLocalName();
+            if (name.equals("testName")) {
+                name = "name";
+            }
+            if (name.equals("skipped")) {
+                skipped = Boolean.parseBoolean(r.getElementText().trim());
+                continue;
+            }
+            if (name.equals("errorStackTrace")) {
+                failed = true;
+            }
+            if (fields.contains(name)) {
+                c.put(name, r.getElementText());
+            } else {
+                skip(r);
+            }
+        }
+        c.put("status", skipped ? "skipped" : failed ? "failed" : "passed");
+        return c;
+    }
+
+    /**
+     * Skips the current element, without keeping its text.
+     */
+    private static void skip(XMLStreamReader r) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static boolean isStdio(String name) {
+        return name.equals("stdout") || name.equals("stderr");
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private abstract class Output {
+        abstract void start() throws IOException, XMLStreamException;
+
+        abstract void startSuite(Map<String, String> suite) throws IOException, XMLStreamException;
+
+        abstract void writeCase(Map<String, String> c) throws IOException, XMLStreamException;
+
+        abstract void endSuite() throws IOException, XMLStreamException;
+
+        abstract void end(Integer next) throws IOException, XMLStreamException;
+    }
+
+    private final class JsonOutput extends Output {
+        private final Writer w;
+        private boolean firstSuite = true, firstCase;
+
+        JsonOutput(Writer w) {
+            this.w = w;
+        }
+
+        void start() throws IOException {
+            w.write("{\"suites\":[");
+        }
+
+        void startSuite(Map<String, String> suite) throws IOException {
+            if (!firstSuite) {
+                w.write(',');
+            }
+            firstSuite = false;
+            firstCase = true;
+            w.write('{');
+            for (Map.Entry<String, String> e : suite.entrySet()) {
+                writeField(e.getKey(), e.getValue());
+                w.write(',');
+            }
+            w.write("\"cases\":[");
+        }
+
+        void writeCase(Map<String, String> c) throws IOException {
+            if (!firstCase) {
+                w.write(',');
+            }
+            firstCase = false;
+            w.write('{');
+            boolean first = true;
+            for (String field : CASE_FIELDS) {
+                if (fields.contains(field) && c.containsKey(field)) {
+                    if (!first) {
+                        w.write(',');
+                    }
+                    first = false;
+                    writeField(field, c.get(field));
+                }
+            }
+            w.write('}');
+        }
+
+        private void writeField(String name, String value) throws IOException {
+            w.write(JSONUtils.quote(name));
+            w.write(':');
+            if (name.equals("duration")) {
+                w.write(Float.toString(Float.parseFloat(value.trim())));
+            } else if (name.equals("failedSince")) {
+                w.write(Integer.toString(Integer.parseInt(value.trim())));
+            } else {
+                w.write(JSONUtils.quote(value));
+            }
+        }
+
+        void endSuite() throws IOException {
+            w.write("]}");
+        }
+
+        void end(Integer next) throws IOException {
+            w.write(']');
+            if (next != null) {
+                w.write(",\"next\":");
+                w.write(next.toString());
+            }
+            w.write('}');
+        }
+    }
+
+    private final class XmlOutput extends Output {
+        private final XMLStreamWriter w;
+
+        XmlOutput(Writer w) throws IOException {
+            try {
+                this.w = XMLOutputFactory.newInstance().createXMLStreamWriter(w);
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
+
+        void start() throws XMLStreamException {
+            w.writeStartDocument();
+            w.writeStartElement("testResult");
+        }
+
+        void startSuite(Map<String, String> suite) throws XMLStreamException {
+            w.writeStartElement("suite");
+            for (Map.Entry<String, String> e : suite.entrySet()) {
+                if (!isStdio(e.getKey())) {
+                    w.writeAttribute(e.getKey(), e.getValue());
+                }
+            }
+            for (Map.Entry<String, String> e : suite.entrySet()) {
+                if (isStdio(e.getKey())) {
+                    writeElement(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        void writeCase(Map<String, String> c) throws XMLStreamException {
+            w.writeStartElement("case");
+            for (String field : CASE_FIELDS) {
+                if (fields.contains(field) && c.containsKey(field)) {
+                    writeElement(field, c.get(field));
+                }
+            }
+            w.writeEndElement();
+        }
+
+        private void writeElement(String name, String value) throws XMLStreamException {
+            w.writeStartElement(name);
+            w.writeCharacters(value);
+            w.writeEndElement();
+        }
+
+        void endSuite() throws XMLStreamException {
+            w.writeEndElement();
+        }
+
+        void end(Integer next) throws XMLStreamException {
+            if (next != null) {
+                writeElement("next", next.toString());
+            }
+            w.writeEndElement();
+            w.writeEndDocument();
+            w.flush();
+        }
+    }
+}
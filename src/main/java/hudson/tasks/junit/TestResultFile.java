@@ -0,0 +1,304 @@
+package hudson.tasks.junit;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Job;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The file a {@link TestResultAction} persists its {@link TestResult} in, either plain as {@code junitResult.xml}
+ * or gzip-compressed as {@code junitResult.xml.gz}.
+ *
+ * <p>
+ * Results compress very well, and reading a tenth of the bytes matters more than inflating them on file systems
+ * where I/O is expensive. Results are written compressed if {@link #COMPRESS} is set, and read in either format,
+ * preferring the compressed file if both exist. With {@link #COMPRESS} set, the plain results of older builds
+ * are compressed in the background once Jenkins has started.
+ */
+public final class TestResultFile {
+
+    private static final Logger LOGGER = Logger.getLogger(TestResultFile.class.getName());
+
+    /**
+     * Set to true to write test results gzip-compressed.
+     */
+    public static /* not final */ boolean COMPRESS = Boolean.getBoolean(TestResultFile.class.getName() + ".compress");
+
+    static final String FILE_NAME = "junitResult.xml";
+
+    static final String COMPRESSED_FILE_NAME = FILE_NAME + ".gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final XStream xstream;
+    private final File plain;
+    private final File compressed;
+
+    TestResultFile(XStream xstream, File dir) {
+        this.xstream = xstream;
+        this.plain = new File(dir, FILE_NAME);
+        this.compressed = new File(dir, COMPRESSED_FILE_NAME);
+    }
+
+    /**
+     * @return the file the result is read from, the compressed one if it exists.
+     */
+    public File getFile() {
+        return compressed.exists() ? compressed : plain;
+    }
+
+    public boolean exists() {
+        return compressed.exists() || plain.exists();
+    }
+
+    public boolean isCompressed() {
+        return compressed.exists();
+    }
+
+    /**
+     * @return the size of the result once decompressed, in bytes, as recorded at the end of a gzip file.
+     */
+    public long getUncompressedLength() {
+        if (!compressed.exists()) {
+            return plain.length();
+        }
+        try (RandomAccessFile f = new RandomAccessFile(compressed, "r")) {
+            if (f.length() < 4) {
+                return 0;
+            }
+            // ISIZE, the size of the input modulo 2^32, little endian
+            f.seek(f.length() - 4);
+            long size = 0;
+            for (int i = 0; i < 4; i++) {
+                size |= (long) f.read() << (8 * i);
+            }
+            return size;
+        } catch (IOException e) {
+            return compressed.length();
+        }
+    }
+
+    /**
+     * Opens the stored XML, decompressing it if needed.
+     */
+    public InputStream open() throws IOException {
+        if (compressed.exists()) {
+            return new GZIPInputStream(new FileInputStream(compressed), BUFFER_SIZE);
+        }
+        return new BufferedInputStream(new FileInputStream(plain), BUFFER_SIZE);
+    }
+
+    public Object read() throws IOException {
+        if (!compressed.exists()) {
+            return new XmlFile(xstream, plain).read();
+        }
+        try (InputStream in = open()) {
+            return xstream.fromXML(in);
+        } catch (XStreamException | Error e) {
+            throw new IOException("Unable to read " + compressed, e);
+        }
+    }
+
+    /**
+     * Writes the result in the format selected by {@link #COMPRESS}, and removes the file in the other format.
+     */
+    public void write(Object o) throws IOException {
+        stage(o).commit();
+    }
+
+    /**
+     * Serializes the result into a temporary file next to this one, in the format selected by {@link #COMPRESS}.
+     *
+     * <p>
+     * The result is streamed through a buffer into the file as XStream walks it, and the file is synced to disk
+     * once at the end, so that {@link Staged#commit() committing} it only takes a rename.
+     */
+    public Staged stage(Object o) throws IOException {
+        boolean compress = COMPRESS;
+        File tmp = File.createTempFile("junitResult", ".tmp", plain.getParentFile());
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            OutputStream out = compress ? new GZIPOutputStream(fos, BUFFER_SIZE) : new BufferedOutputStream(fos, BUFFER_SIZE);
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            w.write("<?xml version='1.1' encoding='UTF-8'?>\n");
+            xstream.toXML(o, w);
+            w.flush();
+            if (out instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) out).finish();
+            }
+            out.flush();
+            fos.getChannel().force(true);
+        } catch (IOException | XStreamException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw new IOException("Failed to write " + (compress ? compressed : plain), e);
+        }
+        return new Staged(tmp, compress);
+    }
+
+    /**
+     * A result written to a temporary file, to be moved into place.
+     */
+    public final class Staged {
+        private final File tmp;
+        private final boolean compressed;
+
+        private Staged(File tmp, boolean compressed) {
+            this.tmp = tmp;
+            this.compressed = compressed;
+        }
+
+        /**
+         * Atomically replaces the stored result with this one.
+         */
+        public void commit() throws IOException {
+            File target = compressed ? TestResultFile.this.compressed : plain;
+            synchronized (lock()) {
+                try {
+                    Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp.toPath());
+                }
+                Files.deleteIfExists((compressed ? plain : TestResultFile.this.compressed).toPath());
+            }
+        }
+
+        /**
+         * Drops this result, leaving the stored result as it is.
+         */
+        public void discard() throws IOException {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Compresses a plain result as is, without parsing it. The compressed file only replaces the plain one if no
+     * result was stored in the meantime.
+     *
+     * @return false if there was no plain result to compress.
+     */
+    boolean compress() throws IOException {
+        if (!plain.exists() || compressed.exists()) {
+            return false;
+        }
+        BasicFileAttributes before = Files.readAttributes(plain.toPath(), BasicFileAttributes.class);
+        File tmp = File.createTempFile("junitResult", ".tmp", compressed.getParentFile());
+        try {
+            try (InputStream in = new FileInputStream(plain);
+                 OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), BUFFER_SIZE)) {
+                IOUtils.copy(in, out);
+            }
+            synchronized (lock()) {
+                if (compressed.exists() || !plain.exists() || !sameFile(before,
+                        Files.readAttributes(plain.toPath(), BasicFileAttributes.class))) {
+                    // a result was stored while compressing
+                    return false;
+                }
+                Files.move(tmp.toPath(), compressed.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(plain.toPath());
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        return true;
+    }
+
+    private static boolean sameFile(BasicFileAttributes a, BasicFileAttributes b) {
+        return a.size() == b.size() && a.lastModifiedTime().equals(b.lastModifiedTime())
+                && (a.fileKey() == null ? b.fileKey() == null : a.fileKey().equals(b.fileKey()));
+    }
+
+    /**
+     * @return the lock held while replacing the files of this result, shared with the results of some other builds.
+     */
+    private Object lock() {
+        return LOCKS[(plain.getParentFile().hashCode() & Integer.MAX_VALUE) % LOCKS.length];
+    }
+
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getFile().toString();
+    }
+
+    /**
+     * Compresses the plain results of all builds in the background, if {@link #COMPRESS} is set.
+     *
+     * <p>
+     * The build directories are walked on disk rather than through {@link Job#getBuilds()}, which would load every
+     * build of every job.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void compressExistingResults() {
+        if (!COMPRESS) {
+            return;
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "TestResultFile compression"));
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Jenkins jenkins = Jenkins.getInstance();
+                if (jenkins == null) {
+                    return;
+                }
+                int compressed = 0;
+                for (Job<?, ?> job : jenkins.getAllItems(Job.class)) {
+                    File[] dirs = job.getBuildDir().listFiles();
+                    if (dirs == null) {
+                        continue;
+                    }
+                    for (File dir : dirs) {
+                        // builds are in directories named by their number, next to links such as lastSuccessfulBuild
+                        if (!dir.getName().matches("[0-9]+") || !dir.isDirectory() || Files.isSymbolicLink(dir.toPath())) {
+                            continue;
+                        }
+                        try {
+                            // only compressing, which does not parse the result
+                            if (new TestResultFile(null, dir).compress()) {
+                                compressed++;
+                            }
+                        } catch (IOException e) {
+                            LOGGER.log(Level.WARNING, "Failed to compress the test result in " + dir, e);
+                        }
+                    }
+                }
+                LOGGER.log(Level.INFO, "Compressed the test results of {0} builds", compressed);
+            }
+        });
+        executor.shutdown();
+    }
+}
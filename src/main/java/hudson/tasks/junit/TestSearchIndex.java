@@ -0,0 +1,636 @@
+package hudson.tasks.junit;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.test.TestResultHistory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.XStream2;
+import net.sf.json.util.JSONUtils;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Inverted index of the words in the test results of all builds of a job, to find the builds whose tests match
+ * a query without loading the result of every build.
+ *
+ * <p>
+ * The words indexed are those of the full names of all test cases, and of the error details and the top frames
+ * of the stack traces of the failed ones. Stack frames are normalized first, dropping line numbers and the
+ * generated parts of lambda names, so that the same failure is found by the same words in every build.
+ * Each word maps to the numbers of the builds it occurs in, kept as ranges, since the names of most tests occur
+ * in long runs of consecutive builds.
+ *
+ * <p>
+ * The index is optional, see {@link #ENABLED}. It is persisted in the job directory as
+ * {@code junitSearchIndex.xml}, updated in the background whenever a build with a test result completes, and
+ * rebuilt from the last {@link TestResultHistory#MAX_BUILDS} builds, also in the background, if it is missing or
+ * outdated.
+ */
+public final class TestSearchIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(TestSearchIndex.class.getName());
+
+    /**
+     * Set to true to index the test results of every job.
+     */
+    public static /* not final */ boolean ENABLED = Boolean.getBoolean(TestSearchIndex.class.getName() + ".enabled");
+
+    /**
+     * Number of top frames of a stack trace indexed.
+     */
+    static final int MAX_FRAMES = Integer.getInteger(TestSearchIndex.class.getName() + ".maxFrames", 5);
+
+    /**
+     * Words longer than this, such as hashes or encoded data in error messages, are not indexed.
+     */
+    private static final int MAX_WORD_LENGTH = 64;
+
+    /**
+     * Maximum number of builds whose results a single search loads to find the matching tests.
+     */
+    static /* not final */ int MAX_LOADS = Integer.getInteger(TestSearchIndex.class.getName() + ".maxLoads", 100);
+
+    /**
+     * Incremented whenever the words extracted from a result change, so that existing indexes get rebuilt.
+     */
+    private static final int VERSION = 2;
+
+    private static final String FILE_NAME = "junitSearchIndex.xml";
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), "TestSearchIndex"));
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("testSearchIndex", Stored.class);
+    }
+
+    /**
+     * Indexes by the full name of their job, dropped when the job is deleted or renamed.
+     */
+    private static final Map<String, TestSearchIndex> INDEXES = new HashMap<>();
+
+    private final Job<?, ?> job;
+
+    /**
+     * Builds of each word, as sorted, disjoint ranges: {@code from0, to0, from1, to1, ...}.
+     */
+    private final Map<String, int[]> postings = new TreeMap<>();
+
+    /**
+     * Builds whose result has been indexed.
+     */
+    private final TreeSet<Integer> indexed = new TreeSet<>();
+
+    /**
+     * Whether all builds of the job have been indexed, false while the index is being rebuilt.
+     */
+    private boolean complete;
+
+    private TestSearchIndex(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    /**
+     * Gets the index of the given job, loading it or starting to rebuild it as needed.
+     *
+     * @return null if the index is not {@link #ENABLED}.
+     */
+    @CheckForNull
+    public static TestSearchIndex of(Job<?, ?> job) {
+        if (!ENABLED) {
+            return null;
+        }
+        TestSearchIndex index;
+        synchronized (INDEXES) {
+            index = INDEXES.get(job.getFullName());
+            // a job of the same name loaded again, as on reload, gets an index of its own
+            if (index != null && index.job == job) {
+                return index;
+            }
+            index = new TestSearchIndex(job);
+            INDEXES.put(job.getFullName(), index);
+        }
+        if (!index.load()) {
+            index.scheduleRebuild();
+        }
+        return index;
+    }
+
+    /**
+     * @return whether the builds have been indexed; if not, searches may miss older builds. A rebuilt index
+     * leaves out the builds older than the last {@link TestResultHistory#MAX_BUILDS}.
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the number of distinct words indexed.
+     */
+    public synchronized int size() {
+        return postings.size();
+    }
+
+    /**
+     * Finds the builds with tests matching all words of the given query, newest first. No more than
+     * {@link #MAX_LOADS} candidate builds are loaded, so older matches may be missed.
+     *
+     * @param query the words to search for, as in the names, error details or stack traces of tests.
+     * @param limit the maximum number of builds returned.
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> words = words(query);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int[] builds;
+        synchronized (this) {
+            builds = null;
+            for (String word : words) {
+                int[] ranges = postings.get(word);
+                if (ranges == null) {
+                    return Collections.emptyList();
+                }
+                // ranges are updated in place as builds are added
+                builds = builds == null ? ranges.clone() : intersect(builds, ranges);
+            }
+        }
+        List<Hit> hits = new ArrayList<>();
+        int loads = 0;
+        for (int i = builds.length - 2; i >= 0 && hits.size() < limit && loads < MAX_LOADS; i -= 2) {
+            for (int number = builds[i + 1]; number >= builds[i] && hits.size() < limit && loads < MAX_LOADS; number--) {
+                Run<?, ?> run = job.getBuildByNumber(number);
+                // builds deleted since they were indexed are left in the index until it is rebuilt
+                if (run != null) {
+                    loads++;
+                    Hit hit = Hit.of(run, words);
+                    if (hit != null) {
+                        hits.add(hit);
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Writes the builds and tests matching the given query as JSON.
+     */
+    public void writeJson(String query, int limit, Writer w) throws IOException {
+        List<Hit> hits = search(query, limit);
+        w.write("{\"complete\":");
+        w.write(Boolean.toString(isComplete()));
+        w.write(",\"builds\":[");
+        for (int i = 0; i < hits.size(); i++) {
+            Hit hit = hits.get(i);
+            if (i > 0) {
+                w.write(',');
+            }
+            w.write("{\"number\":");
+            w.write(Integer.toString(hit.getRun().getNumber()));
+            w.write(",\"url\":");
+            w.write(JSONUtils.quote(hit.getRun().getUrl()));
+            w.write(",\"tests\":[");
+            for (int j = 0; j < hit.getTests().size(); j++) {
+                CaseResult c = hit.getTests().get(j);
+                if (j > 0) {
+                    w.write(',');
+                }
+                w.write("{\"name\":");
+                w.write(JSONUtils.quote(c.getFullName()));
+                w.write(",\"status\":");
+                w.write(JSONUtils.quote(c.isSkipped() ? "skipped" : c.isFailed() ? "failed" : "passed"));
+                w.write('}');
+            }
+            w.write("]}");
+        }
+        w.write("]}");
+        w.flush();
+    }
+
+    /**
+     * The tests of one build matching a query.
+     */
+    public static final class Hit {
+        private final Run<?, ?> run;
+        private final List<CaseResult> tests;
+
+        private Hit(Run<?, ?> run, List<CaseResult> tests) {
+            this.run = run;
+            this.tests = tests;
+        }
+
+        /**
+         * Loads the result of the given build to find the tests matching all given words.
+         *
+         * @return null if there are none, since the words only occur in different tests.
+         */
+        @CheckForNull
+        static Hit of(Run<?, ?> run, Set<String> words) {
+            TestResultAction action = run.getAction(TestResultAction.class);
+            TestResult result = action == null ? null : action.getResult();
+            if (result == null) {
+                return null;
+            }
+            List<CaseResult> tests = new ArrayList<>();
+            for (SuiteResult suite : result.getSuites()) {
+                for (CaseResult c : suite.getCases()) {
+                    Set<String> caseWords = new LinkedHashSet<>();
+                    addWords(c, caseWords);
+                    if (caseWords.containsAll(words)) {
+                        tests.add(c);
+                    }
+                }
+            }
+            return tests.isEmpty() ? null : new Hit(run, Collections.unmodifiableList(tests));
+        }
+
+        public Run<?, ?> getRun() {
+            return run;
+        }
+
+        public List<CaseResult> getTests() {
+            return tests;
+        }
+    }
+
+    /**
+     * Adds the words of the result of the given build to the index, unless already indexed.
+     *
+     * @return whether the index changed.
+     */
+    synchronized boolean add(int number, TestResult result) {
+        if (!indexed.add(number)) {
+            return false;
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (SuiteResult suite : result.getSuites()) {
+            for (CaseResult c : suite.getCases()) {
+                addWords(c, words);
+            }
+        }
+        for (String word : words) {
+            postings.put(word, add(postings.get(word), number));
+        }
+        return true;
+    }
+
+    /**
+     * Adds a build number to the given ranges, merging it with adjacent ones.
+     */
+    static int[] add(@CheckForNull int[] ranges, int number) {
+        if (ranges == null) {
+            return new int[]{number, number};
+        }
+        int n = ranges.length;
+        // builds are indexed in order as they complete, and newest first when rebuilding, so the common cases are
+        // extending the last range, and the first one, found right away below
+        if (ranges[n - 1] == number - 1) {
+            ranges[n - 1] = number;
+            return ranges;
+        }
+        int i = 0;
+        while (i < n && ranges[i + 1] < number - 1) {
+            i += 2;
+        }
+        if (i < n && ranges[i] <= number + 1) {
+            if (number >= ranges[i] && number <= ranges[i + 1]) {
+                return ranges;
+            }
+            if (number == ranges[i] - 1) {
+                ranges[i] = number;
+                return ranges;
+            }
+            // number == ranges[i + 1] + 1, possibly closing the gap to the next range
+            if (i + 2 < n && ranges[i + 2] == number + 1) {
+                int[] merged = new int[n - 2];
+                System.arraycopy(ranges, 0, merged, 0, i + 1);
+                merged[i + 1] = ranges[i + 3];
+                System.arraycopy(ranges, i + 4, merged, i + 2, n - i - 4);
+                return merged;
+            }
+            ranges[i + 1] = number;
+            return ranges;
+        }
+        int[] inserted = new int[n + 2];
+        System.arraycopy(ranges, 0, inserted, 0, i);
+        inserted[i] = number;
+        inserted[i + 1] = number;
+        System.arraycopy(ranges, i, inserted, i + 2, n - i);
+        return inserted;
+    }
+
+    /**
+     * @return the build numbers in both of the given ranges, as ranges.
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            int from = Math.max(a[i], b[j]);
+            int to = Math.min(a[i + 1], b[j + 1]);
+            if (from <= to) {
+                result[n++] = from;
+                result[n++] = to;
+            }
+            if (a[i + 1] < b[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static void addWords(CaseResult c, Set<String> words) {
+        addWords(c.getFullName(), words);
+        if (c.isFailed()) {
+            addWords(c.getErrorDetails(), words);
+            addWords(normalizeStackTrace(c.getErrorStackTrace()), words);
+        }
+    }
+
+    /**
+     * Keeps the exception and the top {@link #MAX_FRAMES} frames of each of its causes, normalized as by
+     * {@link FailureSignature#normalizeFrame(String)}.
+     */
+    static String normalizeStackTrace(@CheckForNull String stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder();
+        int frames = 0;
+        for (String line : stackTrace.split("\r?\n")) {
+            line = line.trim();
+            if (line.startsWith("at ")) {
+                if (frames++ >= MAX_FRAMES) {
+                    continue;
+                }
+                line = FailureSignature.normalizeFrame(line.substring(3));
+            } else if (line.startsWith("...")) {
+                continue;
+            } else {
+                // the exception, or one of its causes, with its message
+                frames = 0;
+            }
+            normalized.append(line).append('\n');
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Splits the given text into lower case words of letters, digits, {@code _} and {@code $}. Numbers, such as
+     * line numbers, ports or durations, are left out, as are very short and very long words.
+     */
+    static Set<String> words(@CheckForNull String text) {
+        Set<String> words = new LinkedHashSet<>();
+        addWords(text, words);
+        return words;
+    }
+
+    private static void addWords(@CheckForNull String text, Set<String> words) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        for (int start = 0; start < length; ) {
+            while (start < length && !isWordChar(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            boolean number = true;
+            while (end < length && isWordChar(text.charAt(end))) {
+                number &= Character.isDigit(text.charAt(end));
+                end++;
+            }
+            if (end - start > 1 && end - start <= MAX_WORD_LENGTH && !number) {
+                words.add(text.substring(start, end).toLowerCase(Locale.ENGLISH));
+            }
+            start = end;
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * Indexes the result of the given build in the background.
+     */
+    private void schedule(final Run<?, ?> run) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                TestResultAction action = run.getAction(TestResultAction.class);
+                TestResult result = action == null ? null : action.getResult();
+                if (result != null && add(run.getNumber(), result)) {
+                    save();
+                }
+            }
+        });
+    }
+
+    /**
+     * Indexes the results of all builds of the job in the background, oldest first.
+     */
+    void scheduleRebuild() {
+        synchronized (this) {
+            postings.clear();
+            indexed.clear();
+            complete = false;
+        }
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // walked newest first, so that neither all builds nor their results are held at once
+                int count = 0;
+                for (Run<?, ?> run = job.getLastBuild(); run != null && count < TestResultHistory.MAX_BUILDS; run = run.getPreviousBuild()) {
+                    count++;
+                    if (run.isBuilding()) {
+                        // indexed once completed
+                        continue;
+                    }
+                    TestResultAction action = run.getAction(TestResultAction.class);
+                    if (action == null) {
+                        continue;
+                    }
+                    try {
+                        TestResult result = action.getResult();
+                        if (result != null) {
+                            add(run.getNumber(), result);
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to index the test result of " + run, e);
+                    }
+                }
+                synchronized (TestSearchIndex.this) {
+                    complete = true;
+                }
+                save();
+                LOGGER.log(Level.FINE, "indexed the test results of {0}", job);
+            }
+        });
+    }
+
+    private XmlFile getDataFile() {
+        return new XmlFile(XSTREAM, new File(job.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * @return false if there is no complete index of the current version to load.
+     */
+    private synchronized boolean load() {
+        XmlFile file = getDataFile();
+        if (!file.exists()) {
+            return false;
+        }
+        try {
+            Stored stored = (Stored) file.read();
+            if (stored.version != VERSION || !stored.complete) {
+                return false;
+            }
+            for (Map.Entry<String, String> e : stored.postings.entrySet()) {
+                postings.put(e.getKey(), parseRanges(e.getValue()));
+            }
+            indexed.addAll(stored.indexed);
+            complete = true;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load " + file + ", rebuilding it", e);
+            postings.clear();
+            indexed.clear();
+            return false;
+        }
+    }
+
+    private void save() {
+        Stored stored = new Stored();
+        synchronized (this) {
+            stored.version = VERSION;
+            stored.complete = complete;
+            stored.indexed.addAll(indexed);
+            for (Map.Entry<String, int[]> e : postings.entrySet()) {
+                stored.postings.put(e.getKey(), formatRanges(e.getValue()));
+            }
+        }
+        XmlFile file = getDataFile();
+        try {
+            file.write(stored);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+
+    /**
+     * Formats ranges as in {@code 1-5,7,9-12}.
+     */
+    static String formatRanges(int[] ranges) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (i > 0) {
+                s.append(',');
+            }
+            s.append(ranges[i]);
+            if (ranges[i + 1] != ranges[i]) {
+                s.append('-').append(ranges[i + 1]);
+            }
+        }
+        return s.toString();
+    }
+
+    static int[] parseRanges(String s) {
+        String[] parts = s.split(",");
+        int[] ranges = new int[parts.length * 2];
+        for (int i = 0; i < parts.length; i++) {
+            int dash = parts[i].indexOf('-');
+            ranges[2 * i] = Integer.parseInt(dash < 0 ? parts[i] : parts[i].substring(0, dash));
+            ranges[2 * i + 1] = Integer.parseInt(dash < 0 ? parts[i] : parts[i].substring(dash + 1));
+        }
+        return ranges;
+    }
+
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run> {
+        @Override
+        public void onCompleted(Run run, TaskListener listener) {
+            if (ENABLED && run.getAction(TestResultAction.class) != null) {
+                TestSearchIndex index = of(run.getParent());
+                if (index != null) {
+                    // while rebuilding, the build is indexed along with the others
+                    index.schedule(run);
+                }
+            }
+        }
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            forget(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            // loaded again under the new name, from the file moved along with the job
+            forget(oldFullName);
+        }
+
+        /**
+         * Drops the indexes of the given item and of the items inside it, such as the jobs of a folder.
+         */
+        private static void forget(String fullName) {
+            synchronized (INDEXES) {
+                for (Iterator<String> it = INDEXES.keySet().iterator(); it.hasNext(); ) {
+                    String name = it.next();
+                    if (name.equals(fullName) || name.startsWith(fullName + '/')) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The index in the form it is persisted in.
+     */
+    static final class Stored {
+        int version;
+        boolean complete;
+        final Set<Integer> indexed = new TreeSet<>();
+        final Map<String, String> postings = new TreeMap<>();
+    }
+}
@@ -0,0 +1,260 @@
+package hudson.tasks.junit;
+
+import hudson.model.Run;
+import hudson.tasks.test.TestResultHistory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Splits the test classes of a job into shards of about the same duration, to be run in parallel, based on the
+ * durations recorded by the last builds.
+ *
+ * <p>
+ * The duration of each class is estimated by an exponentially weighted moving average of its durations in the
+ * last builds, oldest first, so that recent builds count the most. Classes are then assigned, longest first, to
+ * the shard with the least estimated duration so far. Nested classes count towards their top level class, as
+ * test runners select classes by their source or class files and run the nested ones with it. Classes that do not occur in any of these builds, such as
+ * newly added ones, are estimated to take as long as the average known class, and classes missing from all
+ * shards can be run by the first one using its {@link Shard#getExcludes() excludes}.
+ */
+public final class TestSharding {
+
+    /**
+     * Default number of builds whose durations are taken into account.
+     */
+    public static final int DEFAULT_BUILDS = 10;
+
+    /**
+     * Weight of the most recent duration of a class in its estimate, between 0 and 1.
+     */
+    static final double ALPHA = Double.parseDouble(System.getProperty(TestSharding.class.getName() + ".alpha", "0.3"));
+
+    /**
+     * Estimate of every class if there are no recorded durations at all, so that classes are spread evenly.
+     */
+    private static final double UNKNOWN_ESTIMATE = 1;
+
+    /**
+     * Estimated durations in seconds, by top level class name.
+     */
+    private final Map<String, Double> estimates;
+
+    private TestSharding(Map<String, Double> estimates) {
+        this.estimates = estimates;
+    }
+
+    /**
+     * Estimates the duration of every class from the results of the given build and of the builds before it.
+     *
+     * @param build  the latest build to take into account, usually the last completed build.
+     * @param builds the maximum number of builds with test results to take into account.
+     */
+    public static TestSharding of(@CheckForNull Run<?, ?> build, int builds) {
+        List<TestResult> results = new ArrayList<>();
+        int visited = 0;
+        for (Run<?, ?> b = build; b != null && results.size() < builds && visited < TestResultHistory.MAX_BUILDS;
+             b = b.getPreviousCompletedBuild(), visited++) {
+            TestResultAction action = b.getAction(TestResultAction.class);
+            TestResult result = action != null ? action.getResult() : null;
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        Collections.reverse(results);
+        return of(results);
+    }
+
+    /**
+     * Estimates the duration of every class from the given results, oldest first.
+     */
+    static TestSharding of(List<TestResult> results) {
+        Map<String, Double> estimates = new HashMap<>();
+        for (TestResult result : results) {
+            for (Map.Entry<String, Double> e : durationsByClass(result).entrySet()) {
+                Double estimate = estimates.get(e.getKey());
+                estimates.put(e.getKey(), estimate == null ? e.getValue() : ALPHA * e.getValue() + (1 - ALPHA) * estimate);
+            }
+        }
+        return new TestSharding(estimates);
+    }
+
+    private static Map<String, Double> durationsByClass(TestResult result) {
+        Map<String, Double> durations = new HashMap<>();
+        for (SuiteResult suite : result.getSuites()) {
+            for (CaseResult c : suite.getCases()) {
+                String className = topLevelClass(c.getClassName());
+                Double duration = durations.get(className);
+                durations.put(className, (duration == null ? 0 : duration) + c.getDuration());
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * @return the name of the top level class of the given, possibly nested, class.
+     */
+    static String topLevelClass(String className) {
+        int nested = className.indexOf('$', className.lastIndexOf('.') + 1);
+        return nested < 0 ? className : className.substring(0, nested);
+    }
+
+    /**
+     * @return the estimated duration of the given class in seconds, along with its nested classes, the
+     * {@link #getDefaultEstimate() default} if it does not occur in the recorded results.
+     */
+    public double getEstimate(String className) {
+        Double estimate = estimates.get(topLevelClass(className));
+        return estimate != null ? estimate : getDefaultEstimate();
+    }
+
+    /**
+     * @return the estimated duration of classes that do not occur in the recorded results, in seconds: the
+     * average estimate of the classes that do.
+     */
+    public double getDefaultEstimate() {
+        if (estimates.isEmpty()) {
+            return UNKNOWN_ESTIMATE;
+        }
+        double total = 0;
+        for (double estimate : estimates.values()) {
+            total += estimate;
+        }
+        return total / estimates.size();
+    }
+
+    /**
+     * @return the names of all top level classes in the recorded results.
+     */
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(estimates.keySet());
+    }
+
+    /**
+     * Splits classes into the given number of shards of about the same estimated duration.
+     *
+     * @param count   the number of shards, at least 1. Some may be empty if there are fewer classes.
+     * @param classes the classes to split, or null for all classes in the recorded results. Nested classes are
+     *                split along with their top level class.
+     */
+    public List<Shard> split(int count, @CheckForNull Collection<String> classes) {
+        if (count < 1) {
+            throw new IllegalArgumentException("The number of shards must be at least 1, got " + count);
+        }
+        // sorted by name first, so that the same durations always lead to the same shards
+        Set<String> topLevel = new LinkedHashSet<>();
+        for (String name : classes != null ? classes : estimates.keySet()) {
+            topLevel.add(topLevelClass(name));
+        }
+        List<String> names = new ArrayList<>(topLevel);
+        Collections.sort(names);
+        final Map<String, Double> byName = new LinkedHashMap<>();
+        for (String name : names) {
+            byName.put(name, getEstimate(name));
+        }
+        Collections.sort(names, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return Double.compare(byName.get(b), byName.get(a));
+            }
+        });
+
+        List<Shard> shards = new ArrayList<>(count);
+        PriorityQueue<Shard> shortest = new PriorityQueue<>(count, Shard.BY_DURATION);
+        for (int i = 0; i < count; i++) {
+            Shard shard = new Shard(i);
+            shards.add(shard);
+            shortest.add(shard);
+        }
+        for (String name : names) {
+            Shard shard = shortest.poll();
+            shard.classes.add(name);
+            shard.estimatedDuration += byName.get(name);
+            shortest.add(shard);
+        }
+        for (Shard shard : shards) {
+            Collections.sort(shard.classes);
+        }
+        // whatever none of the shards includes, such as classes added since, is run by the first one
+        Shard first = shards.get(0);
+        for (Shard shard : shards.subList(1, count)) {
+            first.excludes.addAll(shard.getIncludes());
+        }
+        return shards;
+    }
+
+    /**
+     * One group of test classes to be run together.
+     */
+    public static final class Shard {
+        private final int index;
+        private final List<String> classes = new ArrayList<>();
+        private final List<String> excludes = new ArrayList<>();
+        private double estimatedDuration;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the fully qualified names of the top level classes, sorted.
+         */
+        public List<String> getClasses() {
+            return Collections.unmodifiableList(classes);
+        }
+
+        /**
+         * @return the sum of the estimated durations of the classes, in seconds.
+         */
+        public double getEstimatedDuration() {
+            return estimatedDuration;
+        }
+
+        /**
+         * @return include patterns matching the source and class files of the classes, such as
+         * {@code com/foo/BarTest.java} and {@code com/foo/BarTest.class}, as taken by the test runners of
+         * most build tools.
+         */
+        @Nonnull
+        public List<String> getIncludes() {
+            Set<String> includes = new LinkedHashSet<>();
+            for (String className : classes) {
+                String path = className.replace('.', '/');
+                includes.add(path + ".java");
+                includes.add(path + ".class");
+            }
+            return new ArrayList<>(includes);
+        }
+
+        /**
+         * @return for the first shard, the {@link #getIncludes() includes} of all other shards, and nothing for the
+         * others. Running the first shard with these excludes rather than with its includes also runs the
+         * classes missing from all shards, such as classes that did not exist yet when splitting.
+         */
+        @Nonnull
+        public List<String> getExcludes() {
+            return Collections.unmodifiableList(excludes);
+        }
+
+        private static final Comparator<Shard> BY_DURATION = new Comparator<Shard>() {
+            public int compare(Shard a, Shard b) {
+                int c = Double.compare(a.estimatedDuration, b.estimatedDuration);
+                return c != 0 ? c : Integer.compare(a.index, b.index);
+            }
+        };
+    }
+}
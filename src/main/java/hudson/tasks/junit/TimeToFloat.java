@@ -30,6 +30,11 @@ import java.text.ParseException;
 /**
  * Parse a given time string into float.
  *
+ * <p>
+ * Commas are taken as grouping separators and ignored. Times written the usual way, with at most 8 significant
+ * digits and a small exponent, are parsed without allocating anything, and any other input falls back to
+ * {@link Float#parseFloat(String)} and then to {@link DecimalFormat}, giving the same results either way.
+ *
  * @author mfriedenhagen
  */
 class TimeToFloat {
@@ -40,16 +45,121 @@ class TimeToFloat {
     }
 
     public float parse() {
-        if (time != null) {
-            time = time.replace(",", "");
-            try {
-                return Float.parseFloat(time);
-            } catch (NumberFormatException e) {
-                try {
-                    return new DecimalFormat().parse(time).floatValue();
-                } catch (ParseException x) {
-                    // hmm, don't know what this format is.
+        return parse(time);
+    }
+
+    /**
+     * Powers of ten that are exact as floats.
+     */
+    private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    /**
+     * Largest mantissa that is exact as a float.
+     */
+    private static final long MAX_MANTISSA = 1 << 24;
+
+    static float parse(String time) {
+        if (time == null) {
+            return 0.0f;
+        }
+        int end = time.length();
+        int i = 0;
+        // leading and trailing whitespace, as trimmed by Float.parseFloat once the commas are removed
+        while (i < end && (time.charAt(i) <= ' ' || time.charAt(i) == ',')) {
+            i++;
+        }
+        while (end > i && (time.charAt(end - 1) <= ' ' || time.charAt(end - 1) == ',')) {
+            end--;
+        }
+
+        boolean negative = false;
+        i = skipCommas(time, i, end);
+        if (i < end && (time.charAt(i) == '-' || time.charAt(i) == '+')) {
+            negative = time.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; (i = skipCommas(time, i, end)) < end; i++) {
+            char c = time.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > MAX_MANTISSA) {
+                    return parseSlow(time);
                 }
+                digits++;
+                if (point) {
+                    scale--;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return parseSlow(time);
+        }
+
+        if (i < end && (time.charAt(i) == 'e' || time.charAt(i) == 'E')) {
+            i = skipCommas(time, i + 1, end);
+            boolean negativeExponent = false;
+            if (i < end && (time.charAt(i) == '-' || time.charAt(i) == '+')) {
+                negativeExponent = time.charAt(i) == '-';
+                i++;
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            for (; (i = skipCommas(time, i, end)) < end; i++) {
+                char c = time.charAt(i);
+                if (c < '0' || c > '9' || exponent > 1000) {
+                    break;
+                }
+                exponent = exponent * 10 + (c - '0');
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return parseSlow(time);
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i < end) {
+            return parseSlow(time);
+        }
+
+        float value;
+        if (mantissa == 0) {
+            value = 0.0f;
+        } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+            // both operands are exact, so the quotient is rounded once, as by Float.parseFloat
+            value = mantissa / POWERS_OF_TEN[-scale];
+        } else if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[scale];
+        } else {
+            return parseSlow(time);
+        }
+        return negative ? -value : value;
+    }
+
+    private static int skipCommas(String time, int i, int end) {
+        while (i < end && time.charAt(i) == ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private static float parseSlow(String time) {
+        time = time.replace(",", "");
+        try {
+            return Float.parseFloat(time);
+        } catch (NumberFormatException e) {
+            try {
+                return new DecimalFormat().parse(time).floatValue();
+            } catch (ParseException x) {
+                // hmm, don't know what this format is.
             }
         }
         return 0.0f;
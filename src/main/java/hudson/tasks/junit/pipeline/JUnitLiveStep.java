@@ -0,0 +1,110 @@
+package hudson.tasks.junit.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.junit.JUnitTask;
+import hudson.tasks.junit.LiveTestResults;
+import hudson.tasks.junit.TestDataPublisher;
+import org.apache.tools.ant.types.FileSet;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records test results while the tests in its body are still running, as {@link LiveTestResults}.
+ */
+public class JUnitLiveStep extends Step implements JUnitTask {
+    /**
+     * {@link FileSet} "includes" string, like "foo/bar/*.xml"
+     */
+    private final String testResults;
+
+    private boolean keepLongStdio;
+
+    private Double healthScaleFactor;
+
+    private boolean allowEmptyResults;
+
+    @DataBoundConstructor
+    public JUnitLiveStep(String testResults) {
+        this.testResults = testResults;
+    }
+
+    public String getTestResults() {
+        return testResults;
+    }
+
+    public double getHealthScaleFactor() {
+        return healthScaleFactor == null ? 1.0 : healthScaleFactor;
+    }
+
+    @DataBoundSetter
+    public final void setHealthScaleFactor(double healthScaleFactor) {
+        this.healthScaleFactor = Math.max(0.0, healthScaleFactor);
+    }
+
+    /**
+     * Not supported while tests are running, as publishers may look at all results.
+     */
+    public @Nonnull List<TestDataPublisher> getTestDataPublishers() {
+        return Collections.emptyList();
+    }
+
+    public boolean isKeepLongStdio() {
+        return keepLongStdio;
+    }
+
+    @DataBoundSetter public final void setKeepLongStdio(boolean keepLongStdio) {
+        this.keepLongStdio = keepLongStdio;
+    }
+
+    public boolean isAllowEmptyResults() {
+        return allowEmptyResults;
+    }
+
+    @DataBoundSetter public final void setAllowEmptyResults(boolean allowEmptyResults) {
+        this.allowEmptyResults = allowEmptyResults;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new JUnitLiveStepExecution(this, context);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "junitLive";
+        }
+
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return "Record JUnit-formatted test results while tests are running";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(Run.class, FilePath.class, FlowNode.class, TaskListener.class, Launcher.class);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package hudson.tasks.junit.pipeline;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.junit.LiveTestResults;
+import hudson.tasks.junit.TestResult;
+import hudson.tasks.junit.TestResultAction;
+import hudson.tasks.test.PipelineTestDetails;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static hudson.tasks.junit.pipeline.JUnitResultsStepExecution.getEnclosingBlockIds;
+import static hudson.tasks.junit.pipeline.JUnitResultsStepExecution.getEnclosingBlockNames;
+import static hudson.tasks.junit.pipeline.JUnitResultsStepExecution.getEnclosingStagesAndParallels;
+
+/**
+ * Runs the body, polling for test results in the background until it is over, and then records the rest of them.
+ * Polls and the final recording run one at a time on a small pool of their own, shared by all builds, rather than on
+ * the thread running the Pipeline. {@link Timer} only wakes the next poll up, so that slow agents do not hold its
+ * threads.
+ */
+public class JUnitLiveStepExecution extends StepExecution {
+
+    private static final Logger LOGGER = Logger.getLogger(JUnitLiveStepExecution.class.getName());
+
+    /**
+     * Maximum number of polls and final recordings run concurrently across all builds.
+     */
+    private static final int MAX_THREADS = Integer.getInteger(JUnitLiveStepExecution.class.getName() + ".maxThreads", 4);
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JUnitLiveStep"));
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private transient final JUnitLiveStep step;
+
+    private LiveTestResults live;
+
+    private transient volatile BodyExecution body;
+
+    private transient volatile boolean finished;
+
+    public JUnitLiveStepExecution(@Nonnull JUnitLiveStep step, StepContext context) {
+        super(context);
+        this.step = step;
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        Run<?, ?> run = getContext().get(Run.class);
+        FilePath workspace = getContext().get(FilePath.class);
+        workspace.mkdirs();
+        TaskListener listener = getContext().get(TaskListener.class);
+        FlowNode node = getContext().get(FlowNode.class);
+
+        List<FlowNode> enclosingBlocks = getEnclosingStagesAndParallels(node);
+
+        PipelineTestDetails pipelineTestDetails = new PipelineTestDetails();
+        pipelineTestDetails.setNodeId(node.getId());
+        pipelineTestDetails.setEnclosingBlocks(getEnclosingBlockIds(enclosingBlocks));
+        pipelineTestDetails.setEnclosingBlockNames(getEnclosingBlockNames(enclosingBlocks));
+
+        live = new LiveTestResults(step, pipelineTestDetails);
+        live.start(run, listener);
+        body = getContext().newBodyInvoker().withCallback(new Callback()).start();
+        poll(0);
+        return false;
+    }
+
+    @Override
+    public void onResume() {
+        poll(LiveTestResults.INTERVAL);
+    }
+
+    @Override
+    public void stop(@Nonnull Throwable cause) throws Exception {
+        BodyExecution body = this.body;
+        if (body != null) {
+            // the callback records what is there and ends this step
+            body.cancel(cause);
+        } else {
+            stopWatching();
+            getContext().onFailure(cause);
+        }
+    }
+
+    /**
+     * Stops the watcher on the agent, as far as it can still be reached, when no final recording will do it.
+     */
+    private void stopWatching() {
+        try {
+            FilePath workspace = getContext().get(FilePath.class);
+            if (live != null && workspace != null) {
+                live.stop(workspace);
+            }
+        } catch (Exception e) {
+            // the agent may be gone along with the watcher
+            LOGGER.log(Level.FINE, "Failed to stop watching for test results", e);
+        }
+    }
+
+    private void poll(long delay) {
+        final Runnable poll = new Runnable() {
+            @Override
+            public void run() {
+                long next = LiveTestResults.INTERVAL;
+                synchronized (live) {
+                    if (finished) {
+                        return;
+                    }
+                    try {
+                        StepContext context = getContext();
+                        Run<?, ?> run = context.get(Run.class);
+                        if (!run.isBuilding()) {
+                            // ended without the body being over, as when killed
+                            stopWatching();
+                            return;
+                        }
+                        next = live.poll(run, context.get(FilePath.class), context.get(TaskListener.class));
+                    } catch (Exception e) {
+                        // polled again later, and whatever is missed is recorded once the body is over
+                        LOGGER.log(Level.WARNING, "Failed to record test results while tests are running", e);
+                    }
+                }
+                poll(next);
+            }
+        };
+        Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                EXECUTOR.submit(poll);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void finish(final Object result, final Throwable failure) {
+        finished = true;
+        EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                StepContext context = getContext();
+                synchronized (live) {
+                    try {
+                        Run<?, ?> run = context.get(Run.class);
+                        TaskListener listener = context.get(TaskListener.class);
+                        FlowNode node = context.get(FlowNode.class);
+                        TestResultAction action = live.finish(run, context.get(FilePath.class), context.get(Launcher.class), listener);
+                        if (action != null) {
+                            TestResult testResult = action.getResult().getResultByNode(node.getId());
+                            int testFailures = testResult != null ? testResult.getFailCount() : 0;
+                            if (testFailures > 0) {
+                                node.addOrReplaceAction(new WarningAction(Result.UNSTABLE).withMessage(testFailures + " tests failed"));
+                                run.setResult(Result.UNSTABLE);
+                            }
+                        }
+                    } catch (Exception e) {
+                        if (failure == null) {
+                            context.onFailure(e);
+                            return;
+                        }
+                        // the failure of the body matters more
+                        LOGGER.log(Level.FINE, "Failed to record test results after the body failed", e);
+                    }
+                }
+                if (failure != null) {
+                    context.onFailure(failure);
+                } else {
+                    context.onSuccess(result);
+                }
+            }
+        });
+    }
+
+    private final class Callback extends BodyExecutionCallback {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onSuccess(StepContext context, Object result) {
+            finish(result, null);
+        }
+
+        @Override
+        public void onFailure(StepContext context, Throwable t) {
+            finish(null, t);
+        }
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,103 @@
+package hudson.tasks.junit.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.tasks.junit.TestSharding;
+import hudson.util.FormValidation;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits the test classes of the job into shards of about the same duration, see {@link TestSharding}.
+ * Returns one map per shard, with the {@code classes}, {@code includes} and {@code excludes} of the shard and its
+ * {@code estimatedDuration} in seconds.
+ */
+public class SplitTestsByDurationStep extends Step {
+
+    /**
+     * Number of shards.
+     */
+    private final int count;
+
+    private int builds = TestSharding.DEFAULT_BUILDS;
+
+    /**
+     * Classes to split, or null for all classes in the results of the last builds.
+     */
+    private List<String> classes;
+
+    @DataBoundConstructor
+    public SplitTestsByDurationStep(int count) {
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getBuilds() {
+        return builds;
+    }
+
+    /**
+     * @param builds Number of last builds with test results whose durations are taken into account.
+     */
+    @DataBoundSetter
+    public void setBuilds(int builds) {
+        this.builds = Math.max(1, builds);
+    }
+
+    @CheckForNull
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @param classes Fully qualified names of the classes to split. Those not in the last builds are estimated to
+     *                take as long as the average class.
+     */
+    @DataBoundSetter
+    public void setClasses(@CheckForNull List<String> classes) {
+        this.classes = classes == null || classes.isEmpty() ? null : new ArrayList<>(classes);
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new SplitTestsByDurationStepExecution(this, context);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "splitTestsByDuration";
+        }
+
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return "Split test classes into shards of about the same duration";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(Run.class);
+        }
+
+        public FormValidation doCheckCount(@QueryParameter int value) {
+            return value < 1 ? FormValidation.error("The number of shards must be at least 1") : FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package hudson.tasks.junit.pipeline;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.junit.TestSharding;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class SplitTestsByDurationStepExecution extends SynchronousNonBlockingStepExecution<List<Map<String, Object>>> {
+
+    private transient final SplitTestsByDurationStep step;
+
+    public SplitTestsByDurationStepExecution(@Nonnull SplitTestsByDurationStep step, StepContext context) {
+        super(context);
+        this.step = step;
+    }
+
+    @Override
+    protected List<Map<String, Object>> run() throws Exception {
+        Run<?, ?> run = getContext().get(Run.class);
+        TestSharding sharding = TestSharding.of(run.getPreviousCompletedBuild(), step.getBuilds());
+        List<TestSharding.Shard> shards = sharding.split(step.getCount(), step.getClasses());
+
+        TaskListener listener = getContext().get(TaskListener.class);
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (TestSharding.Shard shard : shards) {
+            if (listener != null) {
+                listener.getLogger().println(String.format(Locale.ENGLISH, "Shard %d: %d test classes, estimated %.1f s",
+                        shard.getIndex(), shard.getClasses().size(), shard.getEstimatedDuration()));
+            }
+            Map<String, Object> map = new HashMap<>();
+            map.put("classes", new ArrayList<>(shard.getClasses()));
+            map.put("includes", shard.getIncludes());
+            map.put("excludes", new ArrayList<>(shard.getExcludes()));
+            map.put("estimatedDuration", shard.getEstimatedDuration());
+            result.add(map);
+        }
+        return result;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
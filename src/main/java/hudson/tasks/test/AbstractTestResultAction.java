@@ -35,7 +35,6 @@ import hudson.model.Project;
 import hudson.model.ResultTrend;
 import hudson.model.Run;
 import hudson.tasks.junit.CaseResult;
-import hudson.tasks.junit.SuiteResult;
 import hudson.util.Area;
 import hudson.util.ChartUtil;
 import hudson.util.ColorPalette;
@@ -73,18 +72,18 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -112,26 +111,16 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
 
     private Map<String, String> descriptions = new ConcurrentHashMap<>();
 
-    /**
-     * Tool tips for "Overall Build Analysis" trend type.
-     */
-    private Map<ChartUtil.NumberOnlyBuildLabel, String> failToolTip, totalToolTip, skipToolTip;
-
-    /**
-     * Tool tips for "Lengthy Tests" trend type.
-     */
-    private Map<ChartUtil.NumberOnlyBuildLabel, String> lengthyToolTip;
-
     /**
      * Array for storing package hierarchy derived from each testcase, used for selecting a particular
      * project.
      */
     private String[] projectList;
 
-    private List<String> mostFailedTestCases;
-
-    private Map<Integer, ArrayList<Integer>> flapperInfo;
-    private Map<Integer, Integer> flapperCountToolTip;
+    /**
+     * The tree of packages, persisted next to the result rather than with the build.
+     */
+    private transient volatile WeakReference<PackageTrie> packageTrie;
 
     /**
      * @since 1.545
@@ -360,6 +349,17 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
         return Collections.emptyList();
     }
 
+    /**
+     * Estimates the number of bytes of heap the test result of this action takes once loaded,
+     * without loading it.
+     *
+     * @return the estimated size in bytes.
+     * @see TestResultHistory
+     */
+    public long getResultSizeEstimate() {
+        return (long) getTotalCount() * 2048;
+    }
+
     /**
      * Start for Test Result Trends.
      * From here onwards start the code area responsible for generating various test result trends.
@@ -381,61 +381,66 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
          */
         if (null != projectList)
             return projectList;
-        hudson.tasks.junit.TestResult r = loadXml();
-        Collection<SuiteResult> suiteList = r.getSuites();
-
-        /*
-         * A set for the package names.
-         */
-        Map<Integer, HashSet<String>> projectSet = new HashMap<>();
-        int projectCount = 0;
-        final int projectCountLimit = 50;
-        int levelCap = Integer.MAX_VALUE;
-        for (SuiteResult suiteResult : suiteList) {
-            String suiteName = suiteResult.getName();
-            String projectName = "";
-
-            String[] packageTree = suiteName.split("[.]");
+        projectList = getPackageTrie().getLevels(PackageTrie.MAX_LEVELS);
+        return projectList;
+    }
 
-            /*
-             * Iterating till the length-1 of packageTree array to exclude class name.
-             */
-            for (int level = 0; level < packageTree.length - 1 && level <= levelCap; level++) {
-                if (!projectName.isEmpty())
-                    projectName += '.';
-                projectName += packageTree[level];
-                if (!projectSet.containsKey(level)) {
-                    projectSet.put(level, new HashSet<String>());
-                }
-                if (!projectSet.get(level).contains(projectName)) {
-                    projectSet.get(level).add(projectName);
-                    projectCount++;
+    /**
+     * A method for getting the tree of packages of the test cases of this build, with the counts of
+     * passed, failed and skipped test cases for each package.
+     *
+     * @return The tree persisted along with the test result, or built from the test result for builds
+     * recorded before it was introduced.
+     */
+    public PackageTrie getPackageTrie() {
+        WeakReference<PackageTrie> ref = packageTrie;
+        PackageTrie trie = ref == null ? null : ref.get();
+        if (trie == null) {
+            trie = run == null ? null : PackageTrie.load(run);
+            if (trie == null) {
+                hudson.tasks.junit.TestResult result = loadXml();
+                if (result == null) {
+                    return new PackageTrie();
                 }
-                if (projectCount > projectCountLimit) {
-                    int levelToDel = projectSet.size() - 1;
-                    int deletionSize = projectSet.get(levelToDel).size();
-                    projectSet.remove(levelToDel);
-                    projectCount -= deletionSize;
-                    levelCap = projectSet.size() - 1;
+                trie = PackageTrie.of(result);
+                if (run != null) {
+                    trie.save(run);
                 }
             }
+            packageTrie = new WeakReference<>(trie);
         }
+        return trie;
+    }
 
-        /*
-         * Converting the set of package names to the corresponding array
-         * and finally sorting it in ascending order.
-         */
-        projectList = new String[projectCount];
-        int index = 0;
-        for (int level : projectSet.keySet()) {
-            Set<String> projectSetPerLevel = projectSet.get(level);
-            for (String projectName : projectSetPerLevel) {
-                projectList[index] = projectName;
-                index++;
-            }
+    /**
+     * Builds the tree of packages of a new test result of this build and writes it next to the result, without
+     * replacing the tree recorded so far. This is meant to be done before taking the lock of this action.
+     *
+     * @param result The new test result.
+     * @return The tree to pass to {@link #recordPackageTrie(PackageTrie.Staged)}, or to discard.
+     */
+    protected PackageTrie.Staged stagePackageTrie(hudson.tasks.junit.TestResult result) {
+        return PackageTrie.of(result).stage(run);
+    }
+
+    /**
+     * Records the tree of packages of a new test result of this build.
+     *
+     * @param staged The tree returned by {@link #stagePackageTrie(hudson.tasks.junit.TestResult)}.
+     */
+    protected void recordPackageTrie(PackageTrie.Staged staged) {
+        packageTrie = new WeakReference<>(staged.commit());
+        projectList = null;
+    }
+
+    /**
+     * Forgets the trends computed for this build, cached or persisted, once its result changed.
+     */
+    protected void invalidateTrends() {
+        if (run != null) {
+            TrendDatasetCache.invalidate(run);
+            TrendPrecomputer.forget(run);
         }
-        Arrays.sort(projectList);
-        return projectList;
     }
 
     /**
@@ -467,47 +472,17 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
      *                     {@link ChartUtil#generateGraph(StaplerRequest, StaplerResponse, JFreeChart, Area)}
      */
     public void doGraphUtil(StaplerRequest req, StaplerResponse rsp) throws IOException {
-        String projectLevel = getParameter(req, AbstractTestResultAction.PROJECTLEVEL);
-        String trendType = getParameter(req, AbstractTestResultAction.TRENDTYPE);
-
-        /*
-         * A binary search for verifying whether the given project level is valid or not. If found in the
-         * array or is equal to "AllProjects" the valid else not.
-         */
-        int index = Arrays.binarySearch(projectList, projectLevel);
-        if ((index >= 0 || projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)) && trendType.equals(AbstractTestResultAction.BUILD_ANALYSIS)) {
-
-            /*
-             * This method generates the trend depicting no. of failed, passed and skipped testcases for
-             * the specified project or for all projects.
-             */
-            //ChartUtil.generateGraph(req, rsp, createChart(req, buildDataSet(req)), calcDefaultSize());
-            ChartUtil.generateGraph(req, rsp, createChart(req, buildDataSetPerProject(req)), calcDefaultSize());
-        }
-        else if ((index >= 0 || projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)) && trendType.equals(AbstractTestResultAction.LENGTHY_TESTS)) {
-
-            /*
-             * This method generates the trends depicting no. of passed testcases which took longer duration
-             * to run in the given build.
-             */
-            ChartUtil.generateGraph(req, rsp, createChart(req, buildLengthyTestDataset(req)), calcDefaultSize());
-        }
-        else if ((index >= 0 || projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)) && trendType.equals(AbstractTestResultAction.FLAKY_TESTS)) {
+        TrendDataset dataset = getTrendDataset(req);
+        if (dataset.isXY()) {
 
             /*
-             * This method generates the trends depicting no. of passed and failed testcases which were
-             * inconsistently failing or passing i.e. flappy behaviour.
+             * Trend depicting no. of passed and failed testcases which were inconsistently failing or
+             * passing i.e. flappy behaviour.
              */
-            ChartUtil.generateGraph(req, rsp, createXYChart(req, buildFlapperDataset(req)), calcDefaultSize());
+            ChartUtil.generateGraph(req, rsp, createXYChart(req, dataset), calcDefaultSize());
         }
         else {
-
-            /*
-             * This method is invoked when a user deliberately fires a wrong url with invalid query
-             * parameters and it depicts trend showing no. of passed, failed and skipped testcases for all
-             * projects.
-             */
-            ChartUtil.generateGraph(req, rsp, createChart(req, buildDataSet(req)), calcDefaultSize());
+            ChartUtil.generateGraph(req, rsp, createChart(req, dataset), calcDefaultSize());
         }
     }
 
@@ -535,42 +510,89 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
      *                     {@link ChartUtil#generateClickableMap(StaplerRequest, StaplerResponse, JFreeChart, Area)}
      */
     public void doGraphMapUtil(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        TrendDataset dataset = getTrendDataset(req);
+        if (dataset.isXY()) {
+            ChartUtil.generateClickableMap(req, rsp, createXYChart(req, dataset), calcDefaultSize());
+        }
+        else {
+            ChartUtil.generateClickableMap(req, rsp, createChart(req, dataset), calcDefaultSize());
+        }
+    }
+
+    /**
+     * Gets the dataset for the trend requested by the query parameters, shared between
+     * {@link #doGraphUtil(StaplerRequest, StaplerResponse)} and
+     * {@link #doGraphMapUtil(StaplerRequest, StaplerResponse)} through {@link TrendDatasetCache}.
+     * Datasets computed by {@link TrendPrecomputer} when the build completed are read instead of computed.
+     *
+     * @param req HTTP request message for the trend.
+     * @return The dataset along with the tool tips of the requested trend.
+     * @throws IOException In case the dataset could not be computed.
+     */
+    private TrendDataset getTrendDataset(StaplerRequest req) throws IOException {
+        final TrendDatasetCache.Key key = getTrendKey(req);
+        return TrendDatasetCache.get(key, new Callable<TrendDataset>() {
+            @Override
+            public TrendDataset call() {
+                TrendDataset stored = TrendPrecomputer.load(run, key);
+                return stored != null ? stored : computeTrendDataset(key);
+            }
+        });
+    }
+
+    /**
+     * Builds the cache key identifying the trend requested by the query parameters.
+     * <p>
+     * If the user deliberately fires a wrong url with invalid query parameters then the key identifies
+     * the trend showing no. of passed, failed and skipped testcases for all projects.
+     */
+    private TrendDatasetCache.Key getTrendKey(StaplerRequest req) {
+        boolean failureOnly = Boolean.valueOf(getParameter(req, AbstractTestResultAction.FAILUREONLY));
         String projectLevel = getParameter(req, AbstractTestResultAction.PROJECTLEVEL);
         String trendType = getParameter(req, AbstractTestResultAction.TRENDTYPE);
-        int index = Arrays.binarySearch(projectList, projectLevel);
-        if ((index >= 0 || projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)) && trendType.equals(AbstractTestResultAction.BUILD_ANALYSIS)) {
 
-            /*
-             * This method generates a mapping from chart coordinates to url, to redirect to on clicking the
-             * trend generated by same conditions in {@link #doGraphUtil(StaplerRequest, StaplerResponse)}
-             */
-            //ChartUtil.generateClickableMap(req, rsp, createChart(req, buildDataSet(req)), calcDefaultSize());
-            ChartUtil.generateClickableMap(req, rsp, createChart(req, buildDataSetPerProject(req)), calcDefaultSize());
+        /*
+         * A binary search for verifying whether the given project level is valid or not. If found in the
+         * array or is equal to "AllProjects" the valid else not.
+         */
+        boolean validProject = projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)
+                || Arrays.binarySearch(getProjectList(), projectLevel) >= 0;
+        if (!validProject || !(trendType.equals(AbstractTestResultAction.BUILD_ANALYSIS)
+                || trendType.equals(AbstractTestResultAction.LENGTHY_TESTS)
+                || trendType.equals(AbstractTestResultAction.FLAKY_TESTS))) {
+            return new TrendDatasetCache.Key(run, null, AbstractTestResultAction.ALLPROJECTS, null, null, failureOnly);
         }
-        else if ((index >= 0 || projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)) && trendType.equals(AbstractTestResultAction.LENGTHY_TESTS)) {
+        return new TrendDatasetCache.Key(run, trendType, projectLevel,
+                getParameter(req, AbstractTestResultAction.METRICNAME),
+                getParameter(req, AbstractTestResultAction.ORDERBY), failureOnly);
+    }
+
+    /**
+     * Computes the dataset identified by the given key by walking the build history.
+     */
+    TrendDataset computeTrendDataset(TrendDatasetCache.Key key) {
+        String trendType = key.getTrendType();
+        if (AbstractTestResultAction.BUILD_ANALYSIS.equals(trendType)) {
 
             /*
-             * This method generates a mapping from chart coordinates to url, to redirect to on clicking the
-             * trend generated by same conditions in {@link #doGraphUtil(StaplerRequest, StaplerResponse)}
+             * The trend depicting no. of failed, passed and skipped testcases for the specified project or
+             * for all projects.
              */
-            ChartUtil.generateClickableMap(req, rsp, createChart(req, buildLengthyTestDataset(req)), calcDefaultSize());
+            return buildDataSetPerProject(key.isFailureOnly(), key.getProjectLevel());
         }
-        else if ((index >= 0 || projectLevel.equals(AbstractTestResultAction.ALLPROJECTS)) && trendType.equals(AbstractTestResultAction.FLAKY_TESTS)) {
+        else if (AbstractTestResultAction.LENGTHY_TESTS.equals(trendType)) {
 
             /*
-             * This method generates a mapping from chart coordinates to url, to redirect to on clicking the
-             * trend generated by same conditions in {@link #doGraphUtil(StaplerRequest, StaplerResponse)}
+             * The trends depicting no. of passed testcases which took longer duration to run in the given
+             * build.
              */
-            ChartUtil.generateClickableMap(req, rsp, createXYChart(req, buildFlapperDataset(req)), calcDefaultSize());
+            return buildLengthyTestDataset(key.getProjectLevel(), key.getMetricName());
+        }
+        else if (AbstractTestResultAction.FLAKY_TESTS.equals(trendType)) {
+            return buildFlapperDataset(key.getProjectLevel(), key.getOrderBy());
         }
         else {
-
-            /*
-             * This method is invoked when a user deliberately fires a wrong url with invalid query
-             * parameters and it generates a mapping for the same scenario as in
-             * {@link #doGraphUtil(StaplerRequest, StaplerResponse)}.
-             */
-            ChartUtil.generateClickableMap(req, rsp, createChart(req, buildDataSet(req)), calcDefaultSize());
+            return buildDataSet(key.isFailureOnly());
         }
     }
 
@@ -626,98 +648,124 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
             return new Area(500, 200);
     }
 
+    /**
+     * A method to collect this action and the actions of the previous builds, newest first, which are
+     * to be depicted on a trend.
+     *
+     * @return List of actions capped at the configured maximum length of the trend.
+     * <p>
+     * Only the actions are collected here, their test results are loaded by the callers through a
+     * {@link ResultPrefetcher} so that reading them from disk does not happen one build at a time.
+     */
+    private List<AbstractTestResultAction<?>> getTrendHistory() {
+        List<AbstractTestResultAction<?>> history = new ArrayList<>();
+        for (AbstractTestResultAction<?> a : getTrendWalk()) {
+            history.add(a);
+        }
+        return history;
+    }
+
+    /**
+     * A method to get the walk over this action and the actions of the previous builds which are
+     * to be depicted on a trend.
+     *
+     * @return The walk, restricted to builds already loaded and capped at the configured maximum length
+     * of the trend.
+     */
+    @SuppressWarnings("unchecked")
+    private TestResultHistory<AbstractTestResultAction> getTrendWalk() {
+        int cap = Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", TestResultHistory.MAX_BUILDS);
+        return TestResultHistory.startingAt((AbstractTestResultAction) this, AbstractTestResultAction.class)
+                .loadedOnly()
+                .withMaxBuilds(cap);
+    }
+
     /**
      * A method to build the dataset to be used for generating trends.
      *
-     * @param req The HTTP request message for the trend.
-     * @return An object of type {@link CategoryDataset} in which columns are the build numbers to be depicted on
-     * x-axis and rows are the different data series that need to be analysed.
+     * @param failureOnly True when only the failed testcases are to be depicted.
+     * @return A {@link TrendDataset} whose {@link CategoryDataset} has the build numbers to be depicted on
+     * x-axis as columns and the different data series that need to be analysed as rows.
      * <p>
-     * This method creates {@link CategoryDataset} object and the created object is exactly same as the one
-     * created by {@link #buildDataSetPerProject(StaplerRequest)} with the only difference being it does not
-     * work for a particular project but only for "AllProjects" option.
+     * This method creates the same dataset as {@link #buildDataSetPerProject(boolean, String)} with the only
+     * difference being it does not work for a particular project but only for "AllProjects" option.
      * <p>
      * This method is retained though its functionality is subset of functionality of
-     * {@link #buildDataSetPerProject(StaplerRequest)} as it was there in older versions also.
+     * {@link #buildDataSetPerProject(boolean, String)} as it was there in older versions also.
      */
-    private CategoryDataset buildDataSet(StaplerRequest req) {
-        boolean failureOnly = Boolean.valueOf(getParameter(req, AbstractTestResultAction.FAILUREONLY));
-
-        DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb = new DataSetBuilder<>();
+    private TrendDataset buildDataSet(boolean failureOnly) {
+        DataSetBuilder<String, TrendDataset.BuildLabel> dsb = new DataSetBuilder<>();
 
-        int cap = Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", Integer.MAX_VALUE);
         int count = 0;
-        for (AbstractTestResultAction<?> a = this; a != null; a = a.getPreviousResult(AbstractTestResultAction.class, false)) {
-            if (++count > cap) {
-                LOGGER.log(Level.FINE, "capping test trend for {0} at {1}", new Object[]{run, cap});
-                break;
-            }
-            dsb.add(a.getFailCount(), "failed", new ChartUtil.NumberOnlyBuildLabel(a.run));
+
+        /*
+         * Only the persisted counts are depicted, so no result is loaded and the walk is not limited in bytes.
+         */
+        for (AbstractTestResultAction<?> a : getTrendWalk().withMaxBytes(Long.MAX_VALUE)) {
+            count++;
+            dsb.add(a.getFailCount(), "failed", new TrendDataset.BuildLabel(a.run));
             if (!failureOnly) {
-                dsb.add(a.getSkipCount(), "skipped", new ChartUtil.NumberOnlyBuildLabel(a.run));
-                dsb.add(a.getTotalCount() - a.getFailCount() - a.getSkipCount(), "total", new ChartUtil.NumberOnlyBuildLabel(a.run));
+                dsb.add(a.getSkipCount(), "skipped", new TrendDataset.BuildLabel(a.run));
+                dsb.add(a.getTotalCount() - a.getFailCount() - a.getSkipCount(), "total", new TrendDataset.BuildLabel(a.run));
             }
         }
         LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, count});
-        return dsb.build();
+        return TrendDataset.counts(dsb);
     }
 
     /**
-     * A method to count the number of tests which have failed, passed or skipped.
-     * @param tests List of failed/passed/skipped tests.
+     * A method to add the number of tests which have failed, passed or skipped to the dataset, along with
+     * their names as tool tip.
+     * @param count The number of those tests in the project, as counted by the {@link PackageTrie} of the build.
+     * @param toolTip The names of those tests recorded in the {@link PackageTrie}, or null if not recorded.
+     * @param tests The tests of the build to take the names from when they were not recorded, loaded on demand.
      * @param allPackages True when all packages are to be considered.
      * @param projectLevel The project
-     * @param dsb
-     * @param a
-     * @param seriesName
+     * @param dsb The dataset builder to add the count to.
+     * @param a The action of the build being counted.
+     * @param seriesName The data series the count belongs to.
+     * @param toolTips The tool tips of the data series, keyed by build.
      */
-    private void buildDataSetPerProjectUtil(List<CaseResult> tests, boolean allPackages, String projectLevel,
-                                            DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb,
-                                            AbstractTestResultAction<?> a, String seriesName) {
-        String toolTipString = "";
-        final int maxToolTipLength = 100;
-        boolean generateToolTip = true;
-        int count = 0;
-        for (CaseResult caseResult : tests) {
-            String caseName = caseResult.getFullName();
-            if (!allPackages && !caseName.startsWith(projectLevel))
-                continue;
-            count++;
-            caseName = caseResult.getName();
-            if (!generateToolTip)
-                continue;
-            else if (toolTipString.length() + caseName.length() > maxToolTipLength) {
-                generateToolTip = false;
-                toolTipString += ",...";
-                continue;
+    private void buildDataSetPerProjectUtil(int count, String toolTip, Callable<List<CaseResult>> tests,
+                                            boolean allPackages, String projectLevel,
+                                            DataSetBuilder<String, TrendDataset.BuildLabel> dsb,
+                                            AbstractTestResultAction<?> a, String seriesName,
+                                            Map<TrendDataset.BuildLabel, String> toolTips) {
+        if (count == 0) {
+            toolTip = "";
+        } else if (toolTip == null) {
+            // the project is not one of the levels the tree of that build has tool tips for
+            ToolTipBuilder builder = new ToolTipBuilder();
+            try {
+                for (CaseResult caseResult : tests.call()) {
+                    if (!allPackages && !PackageTrie.isInPackage(caseResult.getFullName(), projectLevel))
+                        continue;
+                    if (!builder.add(caseResult.getName()))
+                        break;
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to load the test result of " + a.run, e);
             }
-            if (!toolTipString.equals(""))
-                toolTipString += ", ";
-            toolTipString += caseName;
+            toolTip = builder.toString();
         }
-        ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(a.run);
+        TrendDataset.BuildLabel label = new TrendDataset.BuildLabel(a.run);
         dsb.add(count, seriesName, label);
 
         /*
-         * Also being stored in {@link #failToolTip, #skipToolTip, #totalToolTip} in order to generate tooltips on
-         * hovering mouse over the trend.
+         * Also being stored in the tool tips of the series in order to generate tooltips on hovering mouse
+         * over the trend.
          */
-        if (seriesName.equals("failed"))
-            failToolTip.put(label, toolTipString);
-        else if (seriesName.equals("skipped"))
-            skipToolTip.put(label, toolTipString);
-        else
-            totalToolTip.put(label, toolTipString);
+        toolTips.put(label, toolTip);
     }
 
     /**
      * A method to build dataset for the chosen project to generate trends.
      *
-     * @param req The HTTP request message for the particular project or all projects for overall
-     *            build analysis trend type.
-     * @return An object of type {@link CategoryDataset} in which columns are the build numbers to be
-     * displayed on x-axis and rows are the different data series that need to be analysed for the chosen
-     * project.
+     * @param failureOnly  True when only the failed testcases are to be depicted.
+     * @param projectLevel The particular project or all projects for overall build analysis trend type.
+     * @return A {@link TrendDataset} whose {@link CategoryDataset} has the build numbers to be
+     * displayed on x-axis as columns and the different data series that need to be analysed for the chosen
+     * project as rows.
      * <p>
      * This method creates {@link CategoryDataset} object for the chosen project with three data series
      * namely "failed" for the no. of failed testcases, "skipped" for number of skipped testcases and
@@ -725,34 +773,39 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
      * total is plotted on top of failed and skipped data series so, total(data series) effectively
      * depict total number of testcases in the build.
      */
-    private CategoryDataset buildDataSetPerProject(StaplerRequest req) {
-        boolean failureOnly = Boolean.valueOf(getParameter(req, AbstractTestResultAction.FAILUREONLY));
-        String projectLevel = getParameter(req, AbstractTestResultAction.PROJECTLEVEL);
+    private TrendDataset buildDataSetPerProject(boolean failureOnly, String projectLevel) {
         boolean allPackages = projectLevel.equals(AbstractTestResultAction.ALLPROJECTS);
-        DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
-        int cap = Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", Integer.MAX_VALUE);
-        int count = 0;
-        failToolTip = new ConcurrentHashMap<>();
-        skipToolTip = new ConcurrentHashMap<>();
-        totalToolTip = new ConcurrentHashMap<>();
-        for (AbstractTestResultAction<?> a = this; a != null; a = a.getPreviousResult(AbstractTestResultAction.class)) {
-            if (++count > cap) {
-                LOGGER.log(Level.FINE, "capping test trend for {0} at {1}", new Object[]{run, cap});
-                break;
-            }
-            hudson.tasks.junit.TestResult r = a.loadXml();
-            List<CaseResult> failedTests = r.getFailedTests();
-            buildDataSetPerProjectUtil(failedTests, allPackages, projectLevel, dsb, a, "failed");
+        DataSetBuilder<String, TrendDataset.BuildLabel> dsb = new DataSetBuilder<String, TrendDataset.BuildLabel>();
+        Map<TrendDataset.BuildLabel, String> failToolTip = new HashMap<>();
+        Map<TrendDataset.BuildLabel, String> skipToolTip = new HashMap<>();
+        Map<TrendDataset.BuildLabel, String> totalToolTip = new HashMap<>();
+        List<AbstractTestResultAction<?>> history = getTrendHistory();
+        for (final AbstractTestResultAction<?> a : history) {
+            PackageTrie trie = a.getPackageTrie();
+            PackageTrie.Node node = allPackages ? trie.getRoot() : trie.getNode(projectLevel);
+            buildDataSetPerProjectUtil(node == null ? 0 : node.getFailCount(), node == null ? null : node.getFailToolTip(),
+                    new Callable<List<CaseResult>>() {
+                        public List<CaseResult> call() {
+                            return a.loadXml().getFailedTests();
+                        }
+                    }, allPackages, projectLevel, dsb, a, "failed", failToolTip);
             if (!failureOnly) {
-                List<CaseResult> skippedTests = r.getSkippedTests();
-                buildDataSetPerProjectUtil(skippedTests, allPackages, projectLevel, dsb, a, "skipped");
-
-                List<CaseResult> passedTests = r.getPassedTests();
-                buildDataSetPerProjectUtil(passedTests, allPackages, projectLevel, dsb, a, "total");
+                buildDataSetPerProjectUtil(node == null ? 0 : node.getSkipCount(), node == null ? null : node.getSkipToolTip(),
+                        new Callable<List<CaseResult>>() {
+                            public List<CaseResult> call() {
+                                return a.loadXml().getSkippedTests();
+                            }
+                        }, allPackages, projectLevel, dsb, a, "skipped", skipToolTip);
+                buildDataSetPerProjectUtil(node == null ? 0 : node.getPassCount(), node == null ? null : node.getPassToolTip(),
+                        new Callable<List<CaseResult>>() {
+                            public List<CaseResult> call() {
+                                return a.loadXml().getPassedTests();
+                            }
+                        }, allPackages, projectLevel, dsb, a, "total", totalToolTip);
             }
         }
-        LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, count});
-        return dsb.build();
+        LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, history.size()});
+        return TrendDataset.buildAnalysis(dsb, failToolTip, skipToolTip, totalToolTip);
     }
 
     /**
@@ -873,107 +926,86 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
      * A method to build dataset for the chosen project in order to generate trends for the analysis of
      * testcases which took longer to run.
      *
-     * @param req The HTTP request message for the particular project or all projects for "lengthy tests"
-     *            trend type.
-     * @return An object of type {@link CategoryDataset} in which columns are the build numbers to be
-     * displayed on x-axis and row is the data series depicting no. of passed testcases which took
-     * longer to run in the respective builds.
+     * @param projectLevel The particular project or all projects for "lengthy tests" trend type.
+     * @param metricName   The metric used for determining whether a testcase took longer to run.
+     * @return A {@link TrendDataset} whose {@link CategoryDataset} has the build numbers to be
+     * displayed on x-axis as columns and the data series depicting no. of passed testcases which took
+     * longer to run in the respective builds as row.
      * <p>
      * This method creates {@link CategoryDataset} object for the chosen project with data series named
      * "Lengthy Tests".
      */
-    private CategoryDataset buildLengthyTestDataset(StaplerRequest req) {
-        String projectLevel = getParameter(req, AbstractTestResultAction.PROJECTLEVEL);
-        String metricName = getParameter(req, AbstractTestResultAction.METRICNAME);
+    private TrendDataset buildLengthyTestDataset(String projectLevel, String metricName) {
         boolean allPackages = projectLevel.equals(AbstractTestResultAction.ALLPROJECTS);
-        DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
-        int cap = Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", Integer.MAX_VALUE);
-        int count = 0;
-        lengthyToolTip = new ConcurrentHashMap<>();
+        DataSetBuilder<String, TrendDataset.BuildLabel> dsb = new DataSetBuilder<String, TrendDataset.BuildLabel>();
+        Map<TrendDataset.BuildLabel, String> lengthyToolTip = new HashMap<>();
 
         /*
-         * A stack is used to traverse the builds in ascending order of build number. First traverse the
-         * builds in descending order of build number and push each of the builds onto the stack. Next
-         * pop each element of the stack and traverse the builds in ascending order of build number.
+         * The builds are traversed in ascending order of build number, so the history collected from
+         * this build backwards is reversed.
          */
-        Deque<AbstractTestResultAction<?>> stack = new ArrayDeque<AbstractTestResultAction<?>>();
-        for (AbstractTestResultAction<?> a = this; a != null; a = a.getPreviousResult(AbstractTestResultAction.class)) {
-            if (++count > cap) {
-                LOGGER.log(Level.FINE, "capping test trend for {0} at {1}", new Object[]{run, cap});
-                break;
-            }
-            stack.push(a);
-        }
+        List<AbstractTestResultAction<?>> history = getTrendHistory();
+        Collections.reverse(history);
 
         /*
          * A hash map for storing mapping of a testcase to the numerical value of metric used for determining
          * whether the testcase is taking longer to run.
          */
         Map<String, Float> allTests = new HashMap<String, Float>();
-        while (!stack.isEmpty()) {
-            AbstractTestResultAction<?> a = stack.peek();
-            hudson.tasks.junit.TestResult r = a.loadXml();
-            List<CaseResult> passedTests = r.getPassedTests();
-            int lengthyTestCount = 0;
-            boolean generateToolTip = true;
-            final int maxToolTipLength = 100;
-            String toolTipString = "";
-            for (CaseResult caseResult : passedTests) {
-                String caseName = caseResult.getFullName();
-                if (!allPackages && !caseName.startsWith(projectLevel))
-                    continue;
-                int moreLengthyTests = 0;
+        try (ResultPrefetcher results = ResultPrefetcher.start(history)) {
+            for (AbstractTestResultAction<?> a : history) {
+                hudson.tasks.junit.TestResult r = results.get(a);
+                List<CaseResult> passedTests = r.getPassedTests();
+                int lengthyTestCount = 0;
+                ToolTipBuilder toolTip = new ToolTipBuilder();
+                for (CaseResult caseResult : passedTests) {
+                    String caseName = caseResult.getFullName();
+                    if (!allPackages && !PackageTrie.isInPackage(caseName, projectLevel))
+                        continue;
+                    int moreLengthyTests = 0;
+
+                    /*
+                     * Default metric for determining whether a testcase took longer to run is "mean" i.e.
+                     * metric using exponentially weighted moving average of test duration till the previous
+                     * build.
+                     * As of now only default metric i.e. "mean" is enabled but other metrics can also be
+                     * enabled by including them in the drop down menu provided on Jenkins UI.
+                     */
+                    if (metricName.equals(AbstractTestResultAction.THRESHOLD)) {
+                        final float threshold = 0.002f;
+                        moreLengthyTests += calculateLengthyTestsByThreshold(threshold, caseResult);
+                    }
+                    else if (metricName.equals(AbstractTestResultAction.MAX)) {
+                        moreLengthyTests += calculateLengthyTestsByMax(caseResult, allTests);
+                    }
+                    else if (metricName.equals(AbstractTestResultAction.PREV)) {
+                        moreLengthyTests += calculateLengthyTestsByPrev(caseResult, allTests);
+                    }
+                    else {
+                        final float alpha = 0.5f;
+                        moreLengthyTests += calculateLengthyTestsByMean(alpha, caseResult, allTests);
+                    }
+                    lengthyTestCount += moreLengthyTests;
+                    if (moreLengthyTests > 0)
+                        toolTip.add(caseResult.getName());
+                }
+                TrendDataset.BuildLabel label = new TrendDataset.BuildLabel(a.run);
+                dsb.add(lengthyTestCount, "Lengthy Tests", label);
 
                 /*
-                 * Default metric for determining whether a testcase took longer to run is "mean" i.e.
-                 * metric using exponentially weighted moving average of test duration till the previous
-                 * build.
-                 * As of now only default metric i.e. "mean" is enabled but other metrics can also be
-                 * enabled by including them in the drop down menu provided on Jenkins UI.
+                 * Also being stored in lengthyToolTip in order to generate tooltips on hovering mouse
+                 * over the trend.
                  */
-                if (metricName.equals(AbstractTestResultAction.THRESHOLD)) {
-                    final float threshold = 0.002f;
-                    moreLengthyTests += calculateLengthyTestsByThreshold(threshold, caseResult);
-                }
-                else if (metricName.equals(AbstractTestResultAction.MAX)) {
-                    moreLengthyTests += calculateLengthyTestsByMax(caseResult, allTests);
-                }
-                else if (metricName.equals(AbstractTestResultAction.PREV)) {
-                    moreLengthyTests += calculateLengthyTestsByPrev(caseResult, allTests);
-                }
-                else {
-                    final float alpha = 0.5f;
-                    moreLengthyTests += calculateLengthyTestsByMean(alpha, caseResult, allTests);
-                }
-                lengthyTestCount += moreLengthyTests;
-                caseName = caseResult.getName();
-                if (!generateToolTip || moreLengthyTests == 0)
-                    continue;
-                else if (toolTipString.length() + caseName.length() > maxToolTipLength) {
-                    generateToolTip = false;
-                    toolTipString += ",...";
-                    continue;
-                }
-                if (!toolTipString.equals(""))
-                    toolTipString += ", ";
-                toolTipString += caseName;
+                lengthyToolTip.put(label, toolTip.toString());
             }
-            ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(a.run);
-            dsb.add(lengthyTestCount, "Lengthy Tests", label);
-
-            /*
-             * Also being stored in {@link #lengthyToolTip} in order to generate tooltips on hovering mouse
-             * over the trend.
-             */
-            lengthyToolTip.put(label, toolTipString);
-            stack.pop();
         }
-        LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, count});
-        return dsb.build();
+        LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, history.size()});
+        return TrendDataset.lengthyTests(dsb, lengthyToolTip);
     }
 
     private void shiftBuildHistoryUtil(ArrayDeque<Pair<AbstractTestResultAction<?>, HashSet<Integer>>> buildHistory,
-                                       Map<Integer, ArrayDeque<AbstractTestResultAction<?>>> testsHistory) {
+                                       Map<Integer, ArrayDeque<AbstractTestResultAction<?>>> testsHistory,
+                                       Map<Integer, Integer> flapperCountToolTip) {
         Pair<AbstractTestResultAction<?>, HashSet<Integer>> lastBuild = buildHistory.peek();
         buildHistory.remove();
         AbstractTestResultAction<?> a = lastBuild.first;
@@ -991,76 +1023,70 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
         flapperCountToolTip.put(a.run.number, count);
     }
 
-    private XYDataset buildFlapperDataset(StaplerRequest req) {
-        String projectLevel = getParameter(req, AbstractTestResultAction.PROJECTLEVEL);
+    private TrendDataset buildFlapperDataset(String projectLevel, String orderBy) {
         boolean allPackages = projectLevel.equals(AbstractTestResultAction.ALLPROJECTS);
-        String orderBy = getParameter(req, AbstractTestResultAction.ORDERBY);
         XYSeriesCollection dataset = new XYSeriesCollection();
         List<XYSeries> failSeries = new ArrayList<>();
         int testsToDisplay = 20;
-        int cap = Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", Integer.MAX_VALUE);
-        int count = 0;
         Map<Integer, ArrayList<Integer>> testInfo = new HashMap<Integer, ArrayList<Integer>>();
         Map<String, Integer> testCaseIndex = new HashMap<>();
-        mostFailedTestCases = new ArrayList<String>();
         XYSeries xySeries = new XYSeries(0);
-        flapperCountToolTip = new HashMap<>();
+        Map<Integer, Integer> flapperCountToolTip = new HashMap<>();
         final int buildHistorySize = 10;
         ArrayDeque<Pair<AbstractTestResultAction<?>, HashSet<Integer>>> buildHistory = new ArrayDeque<>();
         Map<Integer, ArrayDeque<AbstractTestResultAction<?>>> testsHistory = new HashMap<>();
-        for (AbstractTestResultAction<?> a = this; a != null; a = a.getPreviousResult(AbstractTestResultAction.class)) {
-            if (++count > cap) {
-                LOGGER.log(Level.FINE, "capping test trend for {0} at {1}", new Object[]{run, cap});
-                break;
-            }
-            if (this.run.number - a.run.number + 1 > buildHistorySize) {
-                shiftBuildHistoryUtil(buildHistory, testsHistory);
-            }
-            HashSet<Integer> buildSet = new HashSet<>();
-            hudson.tasks.junit.TestResult r = a.loadXml();
-            List<CaseResult> tests = r.getFailedTests();
-            for (CaseResult caseResult : tests) {
-                String caseName = caseResult.getFullName();
-                if (!allPackages && !caseName.startsWith(projectLevel))
-                    continue;
-                if (!testCaseIndex.containsKey(caseName)) {
-                    int index = testCaseIndex.size() + 1;
-                    testCaseIndex.put(caseName, index);
-                    testInfo.put(index, new ArrayList<Integer>());
-                    List<Integer> infoList = testInfo.get(index);
-                    infoList.add(0);
-                    infoList.add(0);
-                    infoList.add(-1);
-                }
-                int index = testCaseIndex.get(caseName);
-                List<Integer> infoList = testInfo.get(index);
-                infoList.set(0, infoList.get(0) + 1);
-                if (infoList.get(2) == 1) {
-                    infoList.set(1, infoList.get(1) + 1);
-                    ArrayDeque<AbstractTestResultAction<?>> testHistory = testsHistory.getOrDefault(index, new ArrayDeque<>());
-                    testHistory.add(a);
-                    testsHistory.put(index, testHistory);
+        List<AbstractTestResultAction<?>> history = getTrendHistory();
+        try (ResultPrefetcher results = ResultPrefetcher.start(history)) {
+            for (AbstractTestResultAction<?> a : history) {
+                if (this.run.number - a.run.number + 1 > buildHistorySize) {
+                    shiftBuildHistoryUtil(buildHistory, testsHistory, flapperCountToolTip);
                 }
-                infoList.set(2, 0);
-                infoList.add(a.run.number);
-                buildSet.add(index);
-            }
-            tests = r.getPassedTests();
-            for (CaseResult caseResult : tests) {
-                String caseName = caseResult.getFullName();
-                if (!allPackages && !caseName.startsWith(projectLevel))
-                    continue;
-                Integer index = testCaseIndex.get(caseName);
-                if (index != null) {
+                HashSet<Integer> buildSet = new HashSet<>();
+                hudson.tasks.junit.TestResult r = results.get(a);
+                List<CaseResult> tests = r.getFailedTests();
+                for (CaseResult caseResult : tests) {
+                    String caseName = caseResult.getFullName();
+                    if (!allPackages && !PackageTrie.isInPackage(caseName, projectLevel))
+                        continue;
+                    if (!testCaseIndex.containsKey(caseName)) {
+                        int index = testCaseIndex.size() + 1;
+                        testCaseIndex.put(caseName, index);
+                        testInfo.put(index, new ArrayList<Integer>());
+                        List<Integer> infoList = testInfo.get(index);
+                        infoList.add(0);
+                        infoList.add(0);
+                        infoList.add(-1);
+                    }
+                    int index = testCaseIndex.get(caseName);
                     List<Integer> infoList = testInfo.get(index);
-                    infoList.set(2, 1);
+                    infoList.set(0, infoList.get(0) + 1);
+                    if (infoList.get(2) == 1) {
+                        infoList.set(1, infoList.get(1) + 1);
+                        ArrayDeque<AbstractTestResultAction<?>> testHistory = testsHistory.getOrDefault(index, new ArrayDeque<>());
+                        testHistory.add(a);
+                        testsHistory.put(index, testHistory);
+                    }
+                    infoList.set(2, 0);
+                    infoList.add(a.run.number);
+                    buildSet.add(index);
                 }
+                tests = r.getPassedTests();
+                for (CaseResult caseResult : tests) {
+                    String caseName = caseResult.getFullName();
+                    if (!allPackages && !PackageTrie.isInPackage(caseName, projectLevel))
+                        continue;
+                    Integer index = testCaseIndex.get(caseName);
+                    if (index != null) {
+                        List<Integer> infoList = testInfo.get(index);
+                        infoList.set(2, 1);
+                    }
+                }
+                xySeries.add(a.run.number, null);
+                buildHistory.add(new Pair<>(a, buildSet));
             }
-            xySeries.add(a.run.number, null);
-            buildHistory.add(new Pair<>(a, buildSet));
         }
         while (!buildHistory.isEmpty()) {
-            shiftBuildHistoryUtil(buildHistory, testsHistory);
+            shiftBuildHistoryUtil(buildHistory, testsHistory, flapperCountToolTip);
         }
         List<Pair<Integer, String>> testFailCount = new ArrayList<>();
         for (String caseName : testCaseIndex.keySet()) {
@@ -1074,8 +1100,8 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
         }
         testFailCount.sort(new PairComparator<Integer, String>());
         testsToDisplay = Math.min(testsToDisplay, testFailCount.size());
-        flapperInfo = new HashMap<>();
-        mostFailedTestCases = new ArrayList<>(testsToDisplay);
+        Map<Integer, ArrayList<Integer>> flapperInfo = new HashMap<>();
+        List<String> mostFailedTestCases = new ArrayList<>(testsToDisplay);
         xySeries.add(this.run.number + 0.5, testsToDisplay + 0.5);
         failSeries.add(xySeries);
         for (int i = 1; i <= testsToDisplay; i++) {
@@ -1107,22 +1133,21 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
                 xySeries.add(x, y);
             }
         }
-        LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, count});
+        LOGGER.log(Level.FINER, "total test trend count for {0}: {1}", new Object[]{run, history.size()});
         for (int testIndex = testsToDisplay; testIndex >= 0; testIndex--) {
             dataset.addSeries(failSeries.get(testIndex));
         }
-        return dataset;
+        return TrendDataset.flakyTests(dataset, mostFailedTestCases, flapperInfo, flapperCountToolTip);
     }
 
     /**
      * A method to get y-axis/range axis label for the trend.
      *
-     * @param req The HTTP request message.
+     * @param trendType The trend type of the rendered dataset.
      * @return Y-axis/range axis label as a string.
      */
-    private String getYAxisLabel(StaplerRequest req) {
-        String trendType = getParameter(req, AbstractTestResultAction.TRENDTYPE);
-        if (trendType.equals(AbstractTestResultAction.BUILD_ANALYSIS) || trendType.equals(AbstractTestResultAction.LENGTHY_TESTS) || trendType.equals(AbstractTestResultAction.FLAKY_TESTS))
+    private String getYAxisLabel(String trendType) {
+        if (trendType != null)
             return "Count";
         else
             return "count";
@@ -1132,7 +1157,8 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
      * Method to create and render trends on Jenkins UI.
      *
      * @param req     The HTTP request message.
-     * @param dataset The dataset containing each of the data series to be rendered on the generated chart.
+     * @param trend   The dataset containing each of the data series to be rendered on the generated chart,
+     *                along with their tool tips.
      * @return An object of type {@link JFreeChart} which contains information about all the properties of
      * chart as well as the renderer object.
      * <p>
@@ -1141,10 +1167,11 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
      * for clickable map and for generating custom tool tip to display on hovering mouse over the chart
      * respectively.
      */
-    private JFreeChart createChart(StaplerRequest req, CategoryDataset dataset) {
+    private JFreeChart createChart(StaplerRequest req, final TrendDataset trend) {
 
         final String relPath = getRelPath(req);
-        String yaxis = getYAxisLabel(req);
+        String yaxis = getYAxisLabel(trend.trendType);
+        CategoryDataset dataset = trend.createCategoryDataset();
 
         final JFreeChart chart = ChartFactory.createStackedAreaChart(
                 null,                   // chart title
@@ -1195,40 +1222,40 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
          * localizer/hudson/tasks/test.
          * The Messages class is used for the purpose of internationalization.
          */
-        if (getParameter(req, AbstractTestResultAction.TRENDTYPE).equals(AbstractTestResultAction.BUILD_ANALYSIS)) {
+        if (AbstractTestResultAction.BUILD_ANALYSIS.equals(trend.trendType)) {
             ar = new StackedAreaRenderer2() {
                 @Override
                 public String generateURL(CategoryDataset dataset, int row, int column) {
-                    ChartUtil.NumberOnlyBuildLabel label = (ChartUtil.NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                    return relPath + label.getRun().getNumber() + "/testReport/";
+                    TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) dataset.getColumnKey(column);
+                    return relPath + label.number + "/testReport/";
                 }
 
                 @Override
                 public String generateToolTip(CategoryDataset dataset, int row, int column) {
-                    ChartUtil.NumberOnlyBuildLabel label = (ChartUtil.NumberOnlyBuildLabel) dataset.getColumnKey(column);
+                    TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) dataset.getColumnKey(column);
                     switch (row) {
                         case 0:
-                            return String.valueOf(Messages.AbstractTestResultAction_perProject(label.getRun().getDisplayName(), failToolTip.get(label)));
+                            return String.valueOf(Messages.AbstractTestResultAction_perProject(label.displayName, trend.failToolTip.get(label)));
                         case 1:
-                            return String.valueOf(Messages.AbstractTestResultAction_perProject(label.getRun().getDisplayName(), skipToolTip.get(label)));
+                            return String.valueOf(Messages.AbstractTestResultAction_perProject(label.displayName, trend.skipToolTip.get(label)));
                         default:
-                            return String.valueOf(Messages.AbstractTestResultAction_perProject(label.getRun().getDisplayName(), totalToolTip.get(label)));
+                            return String.valueOf(Messages.AbstractTestResultAction_perProject(label.displayName, trend.totalToolTip.get(label)));
                     }
                 }
             };
         }
-        else if (getParameter(req, AbstractTestResultAction.TRENDTYPE).equals(AbstractTestResultAction.LENGTHY_TESTS)) {
+        else if (AbstractTestResultAction.LENGTHY_TESTS.equals(trend.trendType)) {
             ar = new StackedAreaRenderer2() {
                 @Override
                 public String generateURL(CategoryDataset dataset, int row, int column) {
-                    ChartUtil.NumberOnlyBuildLabel label = (ChartUtil.NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                    return relPath + label.getRun().getNumber() + "/testReport/";
+                    TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) dataset.getColumnKey(column);
+                    return relPath + label.number + "/testReport/";
                 }
 
                 @Override
                 public String generateToolTip(CategoryDataset dataset, int row, int column) {
-                    ChartUtil.NumberOnlyBuildLabel label = (ChartUtil.NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                    return String.valueOf(Messages.AbstractTestResultAction_lengthyTests(label.getRun().getDisplayName(), lengthyToolTip.get(label)));
+                    TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) dataset.getColumnKey(column);
+                    return String.valueOf(Messages.AbstractTestResultAction_lengthyTests(label.displayName, trend.lengthyToolTip.get(label)));
                 }
             };
         }
@@ -1236,21 +1263,25 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
             ar = new StackedAreaRenderer2() {
                 @Override
                 public String generateURL(CategoryDataset dataset, int row, int column) {
-                    ChartUtil.NumberOnlyBuildLabel label = (ChartUtil.NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                    return relPath + label.getRun().getNumber() + "/testReport/";
+                    TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) dataset.getColumnKey(column);
+                    return relPath + label.number + "/testReport/";
                 }
 
                 @Override
                 public String generateToolTip(CategoryDataset dataset, int row, int column) {
-                    ChartUtil.NumberOnlyBuildLabel label = (ChartUtil.NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                    AbstractTestResultAction a = label.getRun().getAction(AbstractTestResultAction.class);
+                    TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) dataset.getColumnKey(column);
+                    // the rows are the failed, skipped and passed counts, which add up to the total
                     switch (row) {
                         case 0:
-                            return String.valueOf(Messages.AbstractTestResultAction_fail(label.getRun().getDisplayName(), a.getFailCount()));
+                            return String.valueOf(Messages.AbstractTestResultAction_fail(label.displayName, dataset.getValue(row, column).intValue()));
                         case 1:
-                            return String.valueOf(Messages.AbstractTestResultAction_skip(label.getRun().getDisplayName(), a.getSkipCount()));
+                            return String.valueOf(Messages.AbstractTestResultAction_skip(label.displayName, dataset.getValue(row, column).intValue()));
                         default:
-                            return String.valueOf(Messages.AbstractTestResultAction_test(label.getRun().getDisplayName(), a.getTotalCount()));
+                            int total = 0;
+                            for (int r = 0; r < dataset.getRowCount(); r++) {
+                                total += dataset.getValue(r, column).intValue();
+                            }
+                            return String.valueOf(Messages.AbstractTestResultAction_test(label.displayName, total));
                     }
                 }
             };
@@ -1273,8 +1304,9 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
         return relPath;
     }
 
-    private JFreeChart createXYChart(StaplerRequest req, XYDataset dataset) {
+    private JFreeChart createXYChart(StaplerRequest req, final TrendDataset trend) {
         final String relPath = getRelPath(req);
+        XYDataset dataset = trend.createXYDataset();
         final String yAxis = "Test Cases";
         final String xAxis = "Build Number";
         final JFreeChart chart = ChartFactory.createXYLineChart(
@@ -1317,10 +1349,10 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
             public String generateToolTip(XYDataset dataset, int series, int item) {
                 int x = (int) (dataset.getXValue(series, item) + 0.5);
                 int y = (int) (dataset.getYValue(series, item) + 0.5);
-                String caseName = mostFailedTestCases.get(y - 1) + "\n";
-                String totalFailCount = flapperInfo.get(y).get(0) + "\n";
-                String flapCount = flapperInfo.get(y).get(1) + "\n";
-                String flapperCount = flapperCountToolTip.get(x).toString();
+                String caseName = trend.mostFailedTestCases.get(y - 1) + "\n";
+                String totalFailCount = trend.flapperInfo.get(y).get(0) + "\n";
+                String flapCount = trend.flapperInfo.get(y).get(1) + "\n";
+                String flapperCount = trend.flapperCountToolTip.get(x).toString();
                 String build = "#" + x;
                 return String.valueOf(Messages.AbstractTestResultAction_testInfo(build, caseName, totalFailCount, flapCount, flapperCount));
             }
@@ -1499,16 +1531,16 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
     }
 
     private static final String ISFAILUREONLY = "false";
-    private static final String ALLPROJECTS = "AllProjects";
-    private static final String BUILD_ANALYSIS = "BuildAnalysis";
-    private static final String LENGTHY_TESTS = "LengthyTests";
-    private static final String FLAKY_TESTS = "FlakyTests";
-    private static final String MEAN = "mean";
+    static final String ALLPROJECTS = "AllProjects";
+    static final String BUILD_ANALYSIS = "BuildAnalysis";
+    static final String LENGTHY_TESTS = "LengthyTests";
+    static final String FLAKY_TESTS = "FlakyTests";
+    static final String MEAN = "mean";
     private static final String MAX = "max";
     private static final String PREV = "prev";
     private static final String THRESHOLD = "threshold";
     private static final String FLAPMETRIC = "flap";
-    private static final String FAILMETRIC = "fail";
+    static final String FAILMETRIC = "fail";
     private static final String FAILUREONLY = "failureOnly";
     private static final String PROJECTLEVEL = "projectLevel";
     private static final String TRENDTYPE = "trendType";
@@ -24,7 +24,16 @@
 package hudson.tasks.test;
 
 
+import hudson.util.HttpResponses;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The purpose of this class is to provide a good place for the
@@ -41,4 +50,129 @@ public abstract class MetaTabulatedResult extends TabulatedResult {
      */
     public abstract Collection<? extends TestResult> getFailedTests();
 
+    /**
+     * Default number of tests per page of {@link #getTestsPage(String, StaplerRequest)}.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Sort indexes of the failed, passed and skipped tests, built on first use.
+     */
+    private transient volatile Map<String, TestListIndex> testListIndexes;
+
+    /**
+     * Gets the tests of the given status to index.
+     *
+     * @param status {@code failed}, {@code passed} or {@code skipped}.
+     */
+    protected Collection<? extends TestResult> getTests(String status) {
+        switch (status) {
+            case "failed":
+                return getFailedTests();
+            case "passed":
+                return getPassedTests();
+            case "skipped":
+                return getSkippedTests();
+            default:
+                throw new IllegalArgumentException("Unknown status: " + status);
+        }
+    }
+
+    /**
+     * Gets the sort indexes of the tests of the given status.
+     *
+     * @param status {@code failed}, {@code passed} or {@code skipped}.
+     */
+    public TestListIndex getTestListIndex(String status) {
+        Map<String, TestListIndex> indexes = testListIndexes;
+        if (indexes == null) {
+            synchronized (this) {
+                indexes = testListIndexes;
+                if (indexes == null) {
+                    testListIndexes = indexes = new HashMap<>();
+                }
+            }
+        }
+        synchronized (indexes) {
+            TestListIndex index = indexes.get(status);
+            if (index == null) {
+                index = new TestListIndex(getTests(status));
+                indexes.put(status, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Drops the sort indexes, to be called when the tests of this result change.
+     */
+    protected void resetTestListIndexes() {
+        testListIndexes = null;
+    }
+
+    /**
+     * Gets the page of the tests of the given status requested by the {@code sort}, {@code filter},
+     * {@code start} and {@code limit} query parameters.
+     */
+    public TestListIndex.Page getTestsPage(String status, StaplerRequest req) {
+        return getTestListIndex(status).getPage(
+                TestListIndex.Sort.of(req.getParameter("sort"), TestListIndex.Sort.AGE),
+                req.getParameter("filter"),
+                parseInt(req.getParameter("start"), 0),
+                parseInt(req.getParameter("limit"), DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * Returns a page of the tests of the status given by the {@code status} query parameter as JSON,
+     * see {@link #getTestsPage(String, StaplerRequest)}. Unlike the page, answers 400 to a {@code start} or
+     * {@code limit} that is not a number.
+     */
+    public HttpResponse doTestList(StaplerRequest req) {
+        String status = req.getParameter("status");
+        TestListIndex.Page page;
+        try {
+            page = getTestListIndex(status == null ? "failed" : status).getPage(
+                    TestListIndex.Sort.of(req.getParameter("sort"), TestListIndex.Sort.AGE),
+                    req.getParameter("filter"),
+                    parseStrictInt(req.getParameter("start"), 0),
+                    parseStrictInt(req.getParameter("limit"), DEFAULT_PAGE_SIZE));
+        } catch (IllegalArgumentException e) {
+            return HttpResponses.error(StaplerResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+        JSONArray tests = new JSONArray();
+        for (TestResult test : page.getTests()) {
+            JSONObject json = new JSONObject();
+            json.put("name", test.getFullName());
+            json.put("url", test.getRelativePathFrom(this));
+            json.put("duration", test.getDuration());
+            json.put("failedSince", test.getFailedSince());
+            tests.add(json);
+        }
+        JSONObject json = new JSONObject();
+        json.put("sort", page.getSort());
+        json.put("filter", page.getFilter());
+        json.put("start", page.getStart());
+        json.put("total", page.getTotal());
+        json.put("tests", tests);
+        return HttpResponses.okJSON(json);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static int parseStrictInt(String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
 }
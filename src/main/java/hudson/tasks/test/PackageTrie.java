@@ -0,0 +1,383 @@
+package hudson.tasks.test;
+
+import com.thoughtworks.xstream.XStreamException;
+import hudson.XmlFile;
+import hudson.model.Run;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.util.XStream2;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prefix tree of the packages of the test cases of a build, with the number of passed, failed and skipped
+ * test cases in and below every package.
+ *
+ * <p>
+ * It is computed once when the result is recorded and persisted in a file of its own next to the result, read
+ * only when trends ask for it rather than with the build, so that the project levels offered by the trends and the counts per project level are looked up in time
+ * proportional to the depth of the package rather than by loading and scanning the whole result.
+ *
+ * <p>
+ * The root and the packages of the {@link #getLevels(int) levels} offered as projects also keep the tool tips
+ * of the build analysis trend, the names of their first failed, skipped and passed test cases, so that the
+ * trend does not need to load the result either. They are persisted in the same file as the tree, never in
+ * build.xml.
+ */
+public final class PackageTrie {
+
+    /**
+     * Maximum number of packages offered as projects.
+     */
+    public static final int MAX_LEVELS = 50;
+
+    private static final Logger LOGGER = Logger.getLogger(PackageTrie.class.getName());
+
+    private static final String FILE_NAME = "junitPackages.xml";
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("packages", PackageTrie.class);
+        XSTREAM.alias("package", Node.class);
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * One package of the tree.
+     */
+    public static final class Node {
+        private final Map<String, Node> children = new TreeMap<>();
+        private int passCount, failCount, skipCount;
+        private String passToolTip, failToolTip, skipToolTip;
+
+        /**
+         * @return the sub-packages of this package, by their simple names.
+         */
+        public Map<String, Node> getChildren() {
+            return Collections.unmodifiableMap(children);
+        }
+
+        public int getPassCount() {
+            return passCount;
+        }
+
+        public int getFailCount() {
+            return failCount;
+        }
+
+        public int getSkipCount() {
+            return skipCount;
+        }
+
+        public int getTotalCount() {
+            return passCount + failCount + skipCount;
+        }
+
+        /**
+         * @return the names of the first passed test cases, or null if not recorded for this package.
+         */
+        public String getPassToolTip() {
+            return passToolTip;
+        }
+
+        /**
+         * @return the names of the first failed test cases, or null if not recorded for this package.
+         */
+        public String getFailToolTip() {
+            return failToolTip;
+        }
+
+        /**
+         * @return the names of the first skipped test cases, or null if not recorded for this package.
+         */
+        public String getSkipToolTip() {
+            return skipToolTip;
+        }
+
+        private void count(CaseResult caseResult) {
+            if (caseResult.isSkipped()) {
+                skipCount++;
+            } else if (caseResult.isPassed()) {
+                passCount++;
+            } else {
+                failCount++;
+            }
+        }
+    }
+
+    /**
+     * Builds the tree of the given result.
+     */
+    public static PackageTrie of(hudson.tasks.junit.TestResult result) {
+        PackageTrie trie = new PackageTrie();
+        for (SuiteResult suite : result.getSuites()) {
+            // suites are usually named after their class, list its packages even if the suite has no case
+            trie.add(suite.getName(), null);
+            for (CaseResult caseResult : suite.getCases()) {
+                trie.add(caseResult.getClassName(), caseResult);
+            }
+        }
+        trie.recordToolTips(result);
+        return trie;
+    }
+
+    /**
+     * Reads the tree persisted for the given build.
+     *
+     * @return null if none was persisted, or it cannot be read.
+     */
+    static PackageTrie load(Run<?, ?> run) {
+        XmlFile file = getDataFile(run);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return (PackageTrie) file.read();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Persists this tree for the given build, replacing the one persisted before.
+     */
+    void save(Run<?, ?> run) {
+        XmlFile file = getDataFile(run);
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            // built from the result again when next needed
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+
+    /**
+     * Writes this tree for the given build to a temporary file, to be moved into place by {@link Staged#commit()}.
+     *
+     * @param run The build, or null if the tree is not persisted.
+     */
+    Staged stage(Run<?, ?> run) {
+        if (run == null) {
+            return new Staged(null, null);
+        }
+        File target = getDataFile(run).getFile();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("junitPackages", ".tmp", target.getParentFile());
+            try (Writer w = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(tmp)), StandardCharsets.UTF_8)) {
+                w.write("<?xml version='1.1' encoding='UTF-8'?>\n");
+                XSTREAM.toXML(this, w);
+            }
+        } catch (IOException | XStreamException e) {
+            // the tree persisted before is removed on commit, and built from the result again when next needed
+            LOGGER.log(Level.WARNING, "Failed to save " + target, e);
+            if (tmp != null) {
+                tmp.delete();
+            }
+            tmp = null;
+        }
+        return new Staged(tmp, target);
+    }
+
+    /**
+     * A tree written to a temporary file, to be moved into place.
+     */
+    public final class Staged {
+        private final File tmp;
+        private final File target;
+
+        private Staged(File tmp, File target) {
+            this.tmp = tmp;
+            this.target = target;
+        }
+
+        /**
+         * Replaces the tree persisted for the build by this one.
+         *
+         * @return This tree.
+         */
+        public PackageTrie commit() {
+            if (target != null) {
+                try {
+                    if (tmp != null) {
+                        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } else {
+                        Files.deleteIfExists(target.toPath());
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to save " + target, e);
+                    discard();
+                }
+            }
+            return PackageTrie.this;
+        }
+
+        /**
+         * Drops this tree, leaving the persisted tree as it is.
+         */
+        public void discard() {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static XmlFile getDataFile(Run<?, ?> run) {
+        return new XmlFile(XSTREAM, new File(run.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Records the tool tips of the root and of the packages offered as projects, in a second pass once the
+     * shape of the tree is known.
+     */
+    private void recordToolTips(hudson.tasks.junit.TestResult result) {
+        Map<Node, ToolTipBuilder[]> toolTips = new IdentityHashMap<>();
+        toolTips.put(root, newToolTipBuilders());
+        for (String level : getLevels(MAX_LEVELS)) {
+            toolTips.put(getNode(level), newToolTipBuilders());
+        }
+        for (SuiteResult suite : result.getSuites()) {
+            for (CaseResult caseResult : suite.getCases()) {
+                int status = caseResult.isSkipped() ? 2 : caseResult.isPassed() ? 0 : 1;
+                String className = caseResult.getClassName();
+                Node node = root;
+                toolTips.get(node)[status].add(caseResult.getName());
+                if (className == null) {
+                    continue;
+                }
+                int start = 0;
+                for (int end = className.indexOf('.'); end >= 0; start = end + 1, end = className.indexOf('.', start)) {
+                    node = node.children.get(className.substring(start, end));
+                    ToolTipBuilder[] builders = toolTips.get(node);
+                    if (builders == null) {
+                        // below the deepest level offered as project
+                        break;
+                    }
+                    builders[status].add(caseResult.getName());
+                }
+            }
+        }
+        for (Map.Entry<Node, ToolTipBuilder[]> e : toolTips.entrySet()) {
+            e.getKey().passToolTip = e.getValue()[0].toString();
+            e.getKey().failToolTip = e.getValue()[1].toString();
+            e.getKey().skipToolTip = e.getValue()[2].toString();
+        }
+    }
+
+    private static ToolTipBuilder[] newToolTipBuilders() {
+        return new ToolTipBuilder[]{new ToolTipBuilder(), new ToolTipBuilder(), new ToolTipBuilder()};
+    }
+
+    /**
+     * Adds the packages of the given class to the tree, counting the given test case, if any, in each of them.
+     */
+    private void add(String className, CaseResult caseResult) {
+        Node node = root;
+        if (caseResult != null) {
+            node.count(caseResult);
+        }
+        if (className == null) {
+            return;
+        }
+        // the last segment is the simple name of the class, not a package
+        int start = 0;
+        for (int end = className.indexOf('.'); end >= 0; start = end + 1, end = className.indexOf('.', start)) {
+            String name = className.substring(start, end);
+            Node child = node.children.get(name);
+            if (child == null) {
+                child = new Node();
+                node.children.put(name, child);
+            }
+            if (caseResult != null) {
+                child.count(caseResult);
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * @return the node counting all test cases of the build.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Looks up a package by its fully qualified name.
+     *
+     * @return null if no test case of the build is in that package.
+     */
+    public Node getNode(String packageName) {
+        Node node = root;
+        int start = 0;
+        while (node != null) {
+            int end = packageName.indexOf('.', start);
+            node = node.children.get(end < 0 ? packageName.substring(start) : packageName.substring(start, end));
+            if (end < 0) {
+                return node;
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Lists the packages of the shallowest levels of the tree, adding whole levels as long as no more than
+     * the given number of packages are listed.
+     *
+     * @return the fully qualified names of the packages, sorted.
+     */
+    public String[] getLevels(int limit) {
+        List<String> levels = new ArrayList<>();
+        List<String> names = Collections.singletonList("");
+        List<Node> nodes = Collections.singletonList(root);
+        while (true) {
+            List<String> childNames = new ArrayList<>();
+            List<Node> childNodes = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                for (Map.Entry<String, Node> e : nodes.get(i).children.entrySet()) {
+                    childNames.add(names.get(i).isEmpty() ? e.getKey() : names.get(i) + '.' + e.getKey());
+                    childNodes.add(e.getValue());
+                }
+            }
+            if (childNames.isEmpty() || levels.size() + childNames.size() > limit) {
+                break;
+            }
+            levels.addAll(childNames);
+            names = childNames;
+            nodes = childNodes;
+        }
+        String[] result = levels.toArray(new String[levels.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Checks whether the given fully qualified class or test case name is in the given package or one of its
+     * sub-packages. Unlike a plain {@link String#startsWith(String)}, {@code com.foobar.Test} is not in {@code com.foo}.
+     */
+    public static boolean isInPackage(String name, String packageName) {
+        return name != null && name.startsWith(packageName)
+                && name.length() > packageName.length() && name.charAt(packageName.length()) == '.';
+    }
+}
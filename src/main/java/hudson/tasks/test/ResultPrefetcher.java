@@ -0,0 +1,171 @@
+package hudson.tasks.test;
+
+import hudson.tasks.junit.TestResult;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the test results of a known sequence of builds ahead of the thread consuming them.
+ *
+ * <p>
+ * Trend and history views visit the results of many previous builds, most of which are no longer in memory.
+ * Instead of reading every {@code junitResult.xml} one after the other on the request thread, the consumer
+ * hands the builds it is going to visit to {@link #start(List)} and then asks for each result in turn with
+ * {@link #get(AbstractTestResultAction)}, while the next ones are already being read in the background.
+ *
+ * <p>
+ * All prefetchers share one small pool, so the number of results loaded concurrently is bounded controller-wide.
+ * Each prefetcher only runs ahead of its consumer as far as the memory budget allows, going by
+ * {@link AbstractTestResultAction#getResultSizeEstimate()}; results it did not prefetch are simply loaded
+ * on demand. Closing the prefetcher, or interrupting the consuming thread, cancels everything that has not
+ * started loading yet, so an abandoned request does not keep the pool busy. Loads already running are left to
+ * complete, since interrupting them would fail reading the result of the build.
+ */
+public final class ResultPrefetcher implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultPrefetcher.class.getName());
+
+    /**
+     * Maximum number of results loaded concurrently across all requests.
+     */
+    private static final int MAX_THREADS = Integer.getInteger(ResultPrefetcher.class.getName() + ".maxThreads", 4);
+
+    /**
+     * Number of bytes each prefetcher may hold in loaded but not yet consumed results.
+     */
+    private static final long MEMORY_BUDGET = Long.getLong(ResultPrefetcher.class.getName() + ".memoryBudget",
+            Runtime.getRuntime().maxMemory() / 16);
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ResultPrefetcher"));
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private final List<? extends AbstractTestResultAction<?>> actions;
+
+    private final Map<AbstractTestResultAction<?>, Future<TestResult>> loading = new IdentityHashMap<>();
+
+    private final Map<AbstractTestResultAction<?>, Long> sizes = new IdentityHashMap<>();
+
+    /**
+     * Index of the next action to submit.
+     */
+    private int next;
+
+    /**
+     * Estimated bytes held by submitted results that have not been consumed yet.
+     */
+    private long inFlight;
+
+    private boolean closed;
+
+    private ResultPrefetcher(List<? extends AbstractTestResultAction<?>> actions) {
+        this.actions = new ArrayList<>(actions);
+    }
+
+    /**
+     * Starts loading the results of the given actions, in the order the consumer is going to visit them.
+     */
+    public static ResultPrefetcher start(List<? extends AbstractTestResultAction<?>> actions) {
+        ResultPrefetcher prefetcher = new ResultPrefetcher(actions);
+        prefetcher.fill();
+        return prefetcher;
+    }
+
+    /**
+     * Returns the result of the given action, waiting for it to be prefetched or loading it right away.
+     *
+     * @throws CancellationException if the prefetcher was closed or the calling thread was interrupted.
+     */
+    public TestResult get(AbstractTestResultAction<?> action) {
+        Future<TestResult> f;
+        synchronized (this) {
+            if (closed) {
+                throw new CancellationException("Loading of test results was cancelled");
+            }
+            f = loading.remove(action);
+        }
+        try {
+            if (f == null) {
+                return action.loadXml();
+            }
+            try {
+                return f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new CancellationException("Loading of test results was interrupted");
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.FINE, "Failed to prefetch the test result of " + action.run, e.getCause());
+                return action.loadXml();
+            }
+        } finally {
+            synchronized (this) {
+                Long size = sizes.remove(action);
+                if (size != null) {
+                    inFlight -= size;
+                }
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Submits further actions as long as the memory budget allows. The first pending action is always
+     * submitted, so a single huge result never stalls the prefetcher.
+     */
+    private synchronized void fill() {
+        while (!closed && next < actions.size() && (inFlight == 0 || inFlight < MEMORY_BUDGET)) {
+            final AbstractTestResultAction<?> action = actions.get(next++);
+            if (action == null || loading.containsKey(action)) {
+                continue;
+            }
+            long size = action.getResultSizeEstimate();
+            sizes.put(action, size);
+            inFlight += size;
+            loading.put(action, EXECUTOR.submit(new Callable<TestResult>() {
+                public TestResult call() {
+                    return action.loadXml();
+                }
+            }));
+        }
+    }
+
+    /**
+     * Cancels all loads that have not started yet.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<TestResult> f : loading.values()) {
+            f.cancel(false);
+        }
+        loading.clear();
+        sizes.clear();
+        inFlight = 0;
+    }
+}
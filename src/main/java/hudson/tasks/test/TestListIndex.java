@@ -0,0 +1,216 @@
+package hudson.tasks.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A list of tests, such as the failed tests of a result, that can be browsed page by page, sorted and filtered.
+ *
+ * <p>
+ * The order of the tests for each {@link Sort} is computed once, on first use, and kept as an array of positions,
+ * so a page of a sorted list takes a lookup rather than a sort of the whole list. Filtering by a substring of
+ * the full name scans the tests in that order without keeping anything per test.
+ *
+ * <p>
+ * The index keeps an array of the tests it was built from, for as long as it is kept itself.
+ */
+public final class TestListIndex {
+
+    public enum Sort {
+        /**
+         * By full name.
+         */
+        NAME,
+        /**
+         * Longest first.
+         */
+        DURATION,
+        /**
+         * Most recent failures first, like {@code CaseResult.BY_AGE}.
+         */
+        AGE;
+
+        /**
+         * @return the sort of the given name, or the given default if unknown.
+         */
+        public static Sort of(String name, Sort defaultSort) {
+            if (name != null) {
+                for (Sort sort : values()) {
+                    if (sort.name().equalsIgnoreCase(name)) {
+                        return sort;
+                    }
+                }
+            }
+            return defaultSort;
+        }
+    }
+
+    private final TestResult[] tests;
+
+    private final int[][] orders = new int[Sort.values().length][];
+
+    public TestListIndex(Collection<? extends TestResult> tests) {
+        this.tests = tests.toArray(new TestResult[tests.size()]);
+    }
+
+    public int size() {
+        return tests.length;
+    }
+
+    private synchronized int[] getOrder(Sort sort) {
+        int[] order = orders[sort.ordinal()];
+        if (order == null) {
+            order = sort(sort);
+            orders[sort.ordinal()] = order;
+        }
+        return order;
+    }
+
+    private int[] sort(Sort sort) {
+        // sort keys are computed once per test, not on every comparison
+        final String[] names = new String[tests.length];
+        final float[] durations = sort == Sort.DURATION ? new float[tests.length] : null;
+        final int[] failedSince = sort == Sort.AGE ? new int[tests.length] : null;
+        Integer[] positions = new Integer[tests.length];
+        for (int i = 0; i < tests.length; i++) {
+            positions[i] = i;
+            names[i] = tests[i].getFullName();
+            if (durations != null) {
+                durations[i] = tests[i].getDuration();
+            }
+            if (failedSince != null) {
+                failedSince[i] = tests[i].getFailedSince();
+            }
+        }
+        Arrays.sort(positions, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int c = 0;
+                if (durations != null) {
+                    c = Float.compare(durations[b], durations[a]);
+                } else if (failedSince != null) {
+                    // the later a test started failing, the younger its failure
+                    c = Integer.compare(failedSince[b], failedSince[a]);
+                }
+                return c != 0 ? c : names[a].compareTo(names[b]);
+            }
+        });
+        int[] order = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            order[i] = positions[i];
+        }
+        return order;
+    }
+
+    /**
+     * Gets one page of the tests.
+     *
+     * @param sort   the order of the tests.
+     * @param filter only tests whose full name contains this, ignoring case, if not empty.
+     * @param start  the number of matching tests to skip.
+     * @param limit  the maximum number of tests on the page.
+     */
+    public Page getPage(Sort sort, String filter, int start, int limit) {
+        start = Math.max(0, start);
+        limit = Math.max(1, limit);
+        int[] order = getOrder(sort);
+        List<TestResult> page = new ArrayList<>(Math.min(limit, tests.length));
+        int total;
+        if (filter == null || filter.isEmpty()) {
+            for (int i = start; i < order.length && page.size() < limit; i++) {
+                page.add(tests[order[i]]);
+            }
+            total = order.length;
+        } else {
+            String f = filter.toLowerCase(Locale.ENGLISH);
+            total = 0;
+            for (int position : order) {
+                if (containsIgnoreCase(tests[position].getFullName(), f)) {
+                    if (total >= start && page.size() < limit) {
+                        page.add(tests[position]);
+                    }
+                    total++;
+                }
+            }
+        }
+        return new Page(Collections.unmodifiableList(page), sort, filter, start, limit, total);
+    }
+
+    private static boolean containsIgnoreCase(String s, String lowerCaseNeedle) {
+        for (int i = 0; i + lowerCaseNeedle.length() <= s.length(); i++) {
+            if (s.regionMatches(true, i, lowerCaseNeedle, 0, lowerCaseNeedle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One page of a {@link TestListIndex}.
+     */
+    public static final class Page {
+        private final List<TestResult> tests;
+        private final Sort sort;
+        private final String filter;
+        private final int start, limit, total;
+
+        Page(List<TestResult> tests, Sort sort, String filter, int start, int limit, int total) {
+            this.tests = tests;
+            this.sort = sort;
+            this.filter = filter == null ? "" : filter;
+            this.start = start;
+            this.limit = limit;
+            this.total = total;
+        }
+
+        public List<TestResult> getTests() {
+            return tests;
+        }
+
+        /**
+         * @return the name of the sort, in lower case as used in URLs.
+         */
+        public String getSort() {
+            return sort.name().toLowerCase(Locale.ENGLISH);
+        }
+
+        public String getFilter() {
+            return filter;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * @return the number of tests matching the filter, on all pages.
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        public boolean hasPrevious() {
+            return start > 0;
+        }
+
+        public boolean hasNext() {
+            return start + limit < total;
+        }
+
+        public int getPreviousStart() {
+            return Math.max(0, start - limit);
+        }
+
+        public int getNextStart() {
+            return start + limit;
+        }
+    }
+}
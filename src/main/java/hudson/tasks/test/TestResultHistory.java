@@ -0,0 +1,228 @@
+package hudson.tasks.test;
+
+import hudson.model.Run;
+import jenkins.model.lazy.LazyBuildMixIn;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The test result actions of a build and the builds before it, newest first, walked within explicit budgets.
+ *
+ * <p>
+ * Trends and the history of a test look back through this class, so that none of them can fault in the whole
+ * build history of a job. {@link TestResult#getPreviousResult()} does not: ages and "failing since" depend on
+ * finding the previous result however far back it is, and that walk ends at the first build that has it.
+ * The walk ends as soon as one of its budgets is used up:
+ * <ul>
+ * <li>the number of builds visited, including builds without test results,
+ * <li>the number of bytes the test results of the visited builds take to load, as estimated by
+ *     {@link AbstractTestResultAction#getResultSizeEstimate()} without loading them,
+ * <li>the time spent walking.
+ * </ul>
+ *
+ * <p>
+ * When {@link #loadedOnly() restricted to loaded builds}, the walk also ends at the first build of a lazy
+ * loading job that is not in memory yet, so that only persisted summaries already at hand are looked at.
+ *
+ * @param <T> type of the test result actions to walk.
+ */
+public final class TestResultHistory<T extends AbstractTestResultAction> implements Iterable<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(TestResultHistory.class.getName());
+
+    /**
+     * Default maximum number of builds visited by a single walk.
+     */
+    public static final int MAX_BUILDS = Integer.getInteger(TestResultHistory.class.getName() + ".maxBuilds", 1000);
+
+    /**
+     * Default maximum number of bytes of test results a single walk may lead to load.
+     */
+    public static final long MAX_BYTES = Long.getLong(TestResultHistory.class.getName() + ".maxBytes",
+            Runtime.getRuntime().maxMemory() / 4);
+
+    /**
+     * Default maximum number of milliseconds a single walk may take.
+     */
+    public static final long TIMEOUT = Long.getLong(TestResultHistory.class.getName() + ".timeout", 30000L);
+
+    private final Run<?, ?> run;
+    private final T action;
+    private final Class<T> type;
+    private boolean loadedOnly;
+    private int maxBuilds = MAX_BUILDS;
+    private long maxBytes = MAX_BYTES;
+    private long timeout = TIMEOUT;
+    private volatile boolean truncated;
+    private volatile Run<?, ?> resumeBuild;
+
+    private TestResultHistory(Run<?, ?> run, T action, Class<T> type) {
+        this.run = run;
+        this.action = action;
+        this.type = type;
+    }
+
+    /**
+     * Walks the given action and the actions of the same type in the builds before it.
+     */
+    public static <T extends AbstractTestResultAction> TestResultHistory<T> startingAt(T action, Class<T> type) {
+        return new TestResultHistory<T>(action.run, action, type);
+    }
+
+    /**
+     * Walks the actions of the given type in the given build and the builds before it.
+     */
+    public static <T extends AbstractTestResultAction> TestResultHistory<T> fromBuild(Run<?, ?> run, Class<T> type) {
+        return new TestResultHistory<T>(run, null, type);
+    }
+
+    /**
+     * Walks the actions of the given type in the builds before the given build.
+     */
+    public static <T extends AbstractTestResultAction> TestResultHistory<T> before(Run<?, ?> run, Class<T> type) {
+        return new TestResultHistory<T>(run.getPreviousBuild(), null, type);
+    }
+
+    /**
+     * Stops the walk at the first build that is not loaded yet.
+     */
+    public TestResultHistory<T> loadedOnly() {
+        this.loadedOnly = true;
+        return this;
+    }
+
+    public TestResultHistory<T> withMaxBuilds(int maxBuilds) {
+        this.maxBuilds = maxBuilds;
+        return this;
+    }
+
+    public TestResultHistory<T> withMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public TestResultHistory<T> withTimeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * @return true if the last walk ended because a budget was used up rather than at the oldest build.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the build the last walk would have looked at next had it not been truncated, if known.
+     */
+    public Run<?, ?> getResumeBuild() {
+        return resumeBuild;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        truncated = false;
+        resumeBuild = null;
+        return new Iterator<T>() {
+            private final long deadline = System.currentTimeMillis() + timeout;
+            private final Set<Integer> loadedBuilds = loadedOnly ? getLoadedBuilds(run) : null;
+            /**
+             * The next build to look at when walking build by build.
+             */
+            private Run<?, ?> cursor = action == null ? run : null;
+            /**
+             * The action returned last.
+             */
+            private T last;
+            private T pending = action;
+            private int builds;
+            private long bytes;
+            private boolean done;
+
+            public boolean hasNext() {
+                if (pending == null && !done) {
+                    pending = find();
+                    done = pending == null;
+                }
+                return pending != null;
+            }
+
+            @SuppressWarnings("unchecked")
+            private T find() {
+                if (loadedOnly && last != null) {
+                    // AbstractTestResultAction knows how to stay within the builds already loaded
+                    if (!withinBudget()) {
+                        return null;
+                    }
+                    builds++;
+                    return (T) last.getPreviousResult(type);
+                }
+                while (cursor != null) {
+                    if (!withinBudget()) {
+                        return null;
+                    }
+                    Run<?, ?> b = cursor;
+                    builds++;
+                    cursor = loadedBuilds == null || loadedBuilds.contains(b.number - /* assuming there are no gaps */1) ? b.getPreviousBuild() : null;
+                    T a = b.getAction(type);
+                    if (a != null) {
+                        return a;
+                    }
+                }
+                return null;
+            }
+
+            private boolean withinBudget() {
+                String exhausted = null;
+                if (builds >= maxBuilds) {
+                    exhausted = maxBuilds + " builds";
+                } else if (bytes >= maxBytes) {
+                    exhausted = maxBytes + " bytes";
+                } else if (System.currentTimeMillis() > deadline) {
+                    exhausted = timeout + " ms";
+                }
+                if (exhausted == null) {
+                    return true;
+                }
+                LOGGER.log(Level.FINE, "stopping test result history of {0} after {1}", new Object[]{run, exhausted});
+                truncated = true;
+                resumeBuild = cursor;
+                return false;
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T a = pending;
+                pending = null;
+                if (a == action && last == null) {
+                    builds++;
+                    if (!loadedOnly) {
+                        cursor = run.getPreviousBuild();
+                    }
+                }
+                last = a;
+                bytes += a.getResultSizeEstimate();
+                return a;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static Set<Integer> getLoadedBuilds(Run<?, ?> run) {
+        if (run != null && run.getParent() instanceof LazyBuildMixIn.LazyLoadingJob) {
+            return ((LazyBuildMixIn.LazyLoadingJob<?, ?>) run.getParent()).getLazyBuildMixIn()._getRuns().getLoadedBuilds().keySet();
+        }
+        return null;
+    }
+}
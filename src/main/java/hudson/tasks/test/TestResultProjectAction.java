@@ -28,7 +28,9 @@ import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.tasks.junit.JUnitResultArchiver;
+import hudson.tasks.junit.TestSearchIndex;
 import org.kohsuke.stapler.Ancestor;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
@@ -127,6 +129,26 @@ public class TestResultProjectAction implements Action {
             rsp.setStatus(HttpServletResponse.SC_NOT_FOUND);
     }
 
+    /**
+     * @return the index to search the test results of all builds with, or null if not enabled.
+     */
+    public TestSearchIndex getSearchIndex() {
+        return TestSearchIndex.of(job);
+    }
+
+    /**
+     * Finds the builds with tests matching all words of the query parameter {@code q}, newest first, as JSON.
+     */
+    public void doSearch(StaplerRequest req, StaplerResponse rsp, @QueryParameter String q, @QueryParameter int limit) throws IOException {
+        TestSearchIndex index = getSearchIndex();
+        if (index == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "The test search index is not enabled");
+            return;
+        }
+        rsp.setContentType("application/json;charset=UTF-8");
+        index.writeJson(q, limit > 0 ? limit : SEARCH_LIMIT, rsp.getWriter());
+    }
+
     /**
      * Changes the test result report display mode.
      */
@@ -254,6 +276,10 @@ public class TestResultProjectAction implements Action {
         return paramValue;
     }
 
+    /**
+     * Default maximum number of builds found by a search.
+     */
+    public static final int SEARCH_LIMIT = 20;
     private static final String FAILURE_ONLY_COOKIE = "TestResultAction_failureOnly";
     private static final String PROJECT_LEVEL_COOKIE = "TestResultAction_projectLevel";
     private static final String TREND_TYPE_COOKIE = "TestResultAction_trendType";
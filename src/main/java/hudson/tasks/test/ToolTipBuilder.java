@@ -0,0 +1,50 @@
+package hudson.tasks.test;
+
+/**
+ * Joins the names of the test cases shown as tool tip of a data point of a trend, up to a fixed length.
+ *
+ * <p>
+ * Once the next name would not fit anymore the tool tip ends with {@code ",..."} and all further names are
+ * ignored, so building a tool tip costs the same no matter how many test cases there are.
+ */
+final class ToolTipBuilder {
+
+    /**
+     * Maximum length of the names in a tool tip.
+     */
+    static final int MAX_LENGTH = 100;
+
+    private final StringBuilder toolTip = new StringBuilder();
+
+    private boolean full;
+
+    /**
+     * Adds the given name, unless the tool tip is already full.
+     *
+     * @return false if the tool tip is full and no further names need to be added.
+     */
+    boolean add(String name) {
+        if (full) {
+            return false;
+        }
+        if (toolTip.length() + name.length() > MAX_LENGTH) {
+            full = true;
+            toolTip.append(",...");
+            return false;
+        }
+        if (toolTip.length() > 0) {
+            toolTip.append(", ");
+        }
+        toolTip.append(name);
+        return true;
+    }
+
+    boolean isFull() {
+        return full;
+    }
+
+    @Override
+    public String toString() {
+        return toolTip.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package hudson.tasks.test;
+
+import hudson.model.Run;
+import hudson.util.DataSetBuilder;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYSeriesCollection;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of one trend computation: the chart data together with everything the tool tip
+ * generators need, so that rendering a chart never reads per-request state from the action.
+ *
+ * <p>
+ * Instances are shared between concurrent requests through {@link TrendDatasetCache} and are therefore
+ * never modified once built. JFreeChart registers listeners on the datasets it renders, so callers get a
+ * fresh dataset from {@link #createCategoryDataset()} or {@link #createXYDataset()} for every chart.
+ */
+final class TrendDataset {
+
+    /**
+     * One of the trend type constants of {@link AbstractTestResultAction}, or {@code null} for the
+     * plain fail/skip/total counts.
+     */
+    final String trendType;
+
+    private final DataSetBuilder<String, BuildLabel> categoryData;
+
+    private final XYSeriesCollection xyData;
+
+    /**
+     * Tool tips for "Overall Build Analysis" trend type.
+     */
+    final Map<BuildLabel, String> failToolTip, skipToolTip, totalToolTip;
+
+    /**
+     * Tool tips for "Lengthy Tests" trend type.
+     */
+    final Map<BuildLabel, String> lengthyToolTip;
+
+    /**
+     * Tool tips for "Test Flappers" trend type.
+     */
+    final List<String> mostFailedTestCases;
+    final Map<Integer, ? extends List<Integer>> flapperInfo;
+    final Map<Integer, Integer> flapperCountToolTip;
+
+    private TrendDataset(String trendType,
+                         DataSetBuilder<String, BuildLabel> categoryData,
+                         XYSeriesCollection xyData,
+                         Map<BuildLabel, String> failToolTip,
+                         Map<BuildLabel, String> skipToolTip,
+                         Map<BuildLabel, String> totalToolTip,
+                         Map<BuildLabel, String> lengthyToolTip,
+                         List<String> mostFailedTestCases,
+                         Map<Integer, ? extends List<Integer>> flapperInfo,
+                         Map<Integer, Integer> flapperCountToolTip) {
+        this.trendType = trendType;
+        this.categoryData = categoryData;
+        this.xyData = xyData;
+        this.failToolTip = unmodifiable(failToolTip);
+        this.skipToolTip = unmodifiable(skipToolTip);
+        this.totalToolTip = unmodifiable(totalToolTip);
+        this.lengthyToolTip = unmodifiable(lengthyToolTip);
+        this.mostFailedTestCases = mostFailedTestCases == null ? Collections.<String>emptyList() : Collections.unmodifiableList(mostFailedTestCases);
+        this.flapperInfo = flapperInfo == null ? Collections.<Integer, List<Integer>>emptyMap() : Collections.unmodifiableMap(flapperInfo);
+        this.flapperCountToolTip = flapperCountToolTip == null ? Collections.<Integer, Integer>emptyMap() : Collections.unmodifiableMap(flapperCountToolTip);
+    }
+
+    /**
+     * The build of a column of a category trend. Unlike {@link hudson.util.ChartUtil.NumberOnlyBuildLabel} it
+     * does not refer to the build itself, so that stored trends are turned back into datasets without loading
+     * the builds they depict.
+     */
+    static final class BuildLabel implements Comparable<BuildLabel> {
+        final int number;
+        final String displayName;
+
+        BuildLabel(int number, String displayName) {
+            this.number = number;
+            this.displayName = displayName;
+        }
+
+        BuildLabel(Run<?, ?> run) {
+            this(run.getNumber(), run.getDisplayName());
+        }
+
+        @Override
+        public int compareTo(BuildLabel that) {
+            return Integer.compare(this.number, that.number);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BuildLabel && ((BuildLabel) o).number == number;
+        }
+
+        @Override
+        public int hashCode() {
+            return number;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private static <K, V> Map<K, V> unmodifiable(Map<K, V> map) {
+        return map == null ? Collections.<K, V>emptyMap() : Collections.unmodifiableMap(map);
+    }
+
+    static TrendDataset counts(DataSetBuilder<String, BuildLabel> dsb) {
+        return new TrendDataset(null, dsb, null, null, null, null, null, null, null, null);
+    }
+
+    static TrendDataset buildAnalysis(DataSetBuilder<String, BuildLabel> dsb,
+                                      Map<BuildLabel, String> failToolTip,
+                                      Map<BuildLabel, String> skipToolTip,
+                                      Map<BuildLabel, String> totalToolTip) {
+        return new TrendDataset(AbstractTestResultAction.BUILD_ANALYSIS, dsb, null, failToolTip, skipToolTip, totalToolTip,
+                null, null, null, null);
+    }
+
+    static TrendDataset lengthyTests(DataSetBuilder<String, BuildLabel> dsb,
+                                     Map<BuildLabel, String> lengthyToolTip) {
+        return new TrendDataset(AbstractTestResultAction.LENGTHY_TESTS, dsb, null, null, null, null, lengthyToolTip,
+                null, null, null);
+    }
+
+    static TrendDataset flakyTests(XYSeriesCollection dataset, List<String> mostFailedTestCases,
+                                   Map<Integer, ? extends List<Integer>> flapperInfo,
+                                   Map<Integer, Integer> flapperCountToolTip) {
+        return new TrendDataset(AbstractTestResultAction.FLAKY_TESTS, null, dataset, null, null, null, null,
+                mostFailedTestCases, flapperInfo, flapperCountToolTip);
+    }
+
+    boolean isXY() {
+        return xyData != null;
+    }
+
+    /**
+     * Builds a new {@link CategoryDataset} for a single chart.
+     */
+    CategoryDataset createCategoryDataset() {
+        return categoryData.build();
+    }
+
+    /**
+     * Builds a new {@link XYDataset} for a single chart.
+     */
+    XYDataset createXYDataset() {
+        try {
+            return (XYDataset) xyData.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
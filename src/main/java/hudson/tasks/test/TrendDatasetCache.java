@@ -0,0 +1,161 @@
+package hudson.tasks.test;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import hudson.model.Run;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request-independent cache of the {@link TrendDataset}s behind the test result trend charts.
+ *
+ * <p>
+ * Every trend view is served by two requests, {@link AbstractTestResultAction#doGraph} for the image and
+ * {@link AbstractTestResultAction#doGraphMap} for the clickable map, which both need the very same dataset.
+ * Entries are keyed by build and chart parameters, and concurrent requests for the same key wait for a single
+ * computation instead of each walking the build history on their own.
+ *
+ * <p>
+ * Values are softly reachable and expire after a while, so the cache never competes with the test results
+ * themselves for heap.
+ */
+final class TrendDatasetCache {
+
+    private static final int MAX_ENTRIES = Integer.getInteger(TrendDatasetCache.class.getName() + ".maxEntries", 200);
+
+    private static final int EXPIRY_MINUTES = Integer.getInteger(TrendDatasetCache.class.getName() + ".expiryMinutes", 30);
+
+    private static final Cache<Key, TrendDataset> CACHE = CacheBuilder.newBuilder()
+            .softValues()
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterAccess(EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    private TrendDatasetCache() {
+    }
+
+    /**
+     * Returns the cached dataset for the given key, computing it with {@code loader} if needed.
+     * Concurrent callers asking for the same key share one computation.
+     */
+    static TrendDataset get(Key key, Callable<TrendDataset> loader) throws IOException {
+        try {
+            return CACHE.get(key, loader);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compute test result trend for " + key.runId, cause);
+        } catch (UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Drops every dataset computed for the given build, e.g. because its results changed.
+     */
+    static void invalidate(Run<?, ?> run) {
+        String runId = run.getExternalizableId();
+        for (Iterator<Key> it = CACHE.asMap().keySet().iterator(); it.hasNext(); ) {
+            if (it.next().runId.equals(runId)) {
+                it.remove();
+            }
+        }
+    }
+
+    static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Identifies one trend chart. Parameters that do not influence the given trend type are
+     * normalized away, so that for instance toggling "just show failures" does not invalidate
+     * the lengthy tests chart.
+     */
+    static final class Key {
+        private final String runId;
+        private final String trendType;
+        private final String projectLevel;
+        private final String metricName;
+        private final String orderBy;
+        private final boolean failureOnly;
+
+        Key(Run<?, ?> run, String trendType, String projectLevel, String metricName, String orderBy, boolean failureOnly) {
+            this.runId = run.getExternalizableId();
+            this.trendType = trendType;
+            this.projectLevel = projectLevel;
+            this.metricName = AbstractTestResultAction.LENGTHY_TESTS.equals(trendType) ? metricName : null;
+            this.orderBy = AbstractTestResultAction.FLAKY_TESTS.equals(trendType) ? orderBy : null;
+            this.failureOnly = (trendType == null || AbstractTestResultAction.BUILD_ANALYSIS.equals(trendType)) && failureOnly;
+        }
+
+        String getTrendType() {
+            return trendType;
+        }
+
+        String getProjectLevel() {
+            return projectLevel;
+        }
+
+        String getMetricName() {
+            return metricName;
+        }
+
+        String getOrderBy() {
+            return orderBy;
+        }
+
+        boolean isFailureOnly() {
+            return failureOnly;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return failureOnly == that.failureOnly
+                    && runId.equals(that.runId)
+                    && eq(trendType, that.trendType)
+                    && eq(projectLevel, that.projectLevel)
+                    && eq(metricName, that.metricName)
+                    && eq(orderBy, that.orderBy);
+        }
+
+        private static boolean eq(Object lhs, Object rhs) {
+            return lhs == null ? rhs == null : lhs.equals(rhs);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = runId.hashCode();
+            h = 31 * h + (trendType == null ? 0 : trendType.hashCode());
+            h = 31 * h + (projectLevel == null ? 0 : projectLevel.hashCode());
+            h = 31 * h + (metricName == null ? 0 : metricName.hashCode());
+            h = 31 * h + (orderBy == null ? 0 : orderBy.hashCode());
+            return 31 * h + (failureOnly ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return runId + '/' + trendType + '/' + projectLevel + '/' + metricName + '/' + orderBy + '/' + failureOnly;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package hudson.tasks.test;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.junit.TestResultAction;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.DataSetBuilder;
+import hudson.util.NamingThreadFactory;
+import hudson.util.XStream2;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes the trend datasets of a build in the background once it has completed, and persists them next to
+ * the build as {@code junitTrends.xml}.
+ *
+ * <p>
+ * The "Overall Build Analysis", "Lengthy Tests" and "Test Flappers" trends are computed for all projects, with
+ * the default metric and ordering, as shown by default. Page views then read the stored datasets instead of
+ * walking the build history on the request thread; trends of a single project level or requested with other
+ * parameters, which are rarely looked at, are still computed on demand.
+ *
+ * <p>
+ * The computations run on a small pool with a bounded queue. When the queue is full, the computation is
+ * dropped and left to the first page view, so that completing builds never wait for it.
+ */
+public final class TrendPrecomputer {
+
+    private static final Logger LOGGER = Logger.getLogger(TrendPrecomputer.class.getName());
+
+    /**
+     * Set to true to not compute trends when builds complete.
+     */
+    static /* not final */ boolean DISABLED = Boolean.getBoolean(TrendPrecomputer.class.getName() + ".disabled");
+
+    private static final int MAX_THREADS = Integer.getInteger(TrendPrecomputer.class.getName() + ".maxThreads", 2);
+
+    private static final int QUEUE_SIZE = Integer.getInteger(TrendPrecomputer.class.getName() + ".queueSize", 50);
+
+    private static final String FILE_NAME = "junitTrends.xml";
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+            new NamingThreadFactory(new DaemonThreadFactory(), "TrendPrecomputer"),
+            new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                    LOGGER.log(Level.FINE, "trend precomputation queue is full, leaving trends to be computed on demand");
+                }
+            });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("trends", StoredTrends.class);
+        XSTREAM.alias("trend", StoredTrend.class);
+    }
+
+    private TrendPrecomputer() {
+    }
+
+    /**
+     * Queues the computation of the trends of the given action.
+     */
+    static void schedule(final AbstractTestResultAction<?> action) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    precompute(action);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to compute the test result trends of " + action.run, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes the default trends of the given action, puts them into {@link TrendDatasetCache} and persists them.
+     */
+    static void precompute(final AbstractTestResultAction<?> action) throws IOException {
+        Run<?, ?> run = action.run;
+        StoredTrends stored = new StoredTrends();
+        for (String trendType : new String[]{AbstractTestResultAction.BUILD_ANALYSIS,
+                AbstractTestResultAction.LENGTHY_TESTS, AbstractTestResultAction.FLAKY_TESTS}) {
+            final TrendDatasetCache.Key key = new TrendDatasetCache.Key(run, trendType, AbstractTestResultAction.ALLPROJECTS,
+                    AbstractTestResultAction.MEAN, AbstractTestResultAction.FAILMETRIC, false);
+            TrendDataset dataset = TrendDatasetCache.get(key, new Callable<TrendDataset>() {
+                @Override
+                public TrendDataset call() {
+                    return action.computeTrendDataset(key);
+                }
+            });
+            stored.trends.add(StoredTrend.of(key, dataset));
+        }
+        getDataFile(run).write(stored);
+        LOGGER.log(Level.FINE, "computed {0} test result trends of {1}", new Object[]{stored.trends.size(), run});
+    }
+
+    /**
+     * Reads the persisted dataset for the given key, if the trends of the build were precomputed.
+     *
+     * @return null if there is no such dataset.
+     */
+    static TrendDataset load(Run<?, ?> run, TrendDatasetCache.Key key) {
+        XmlFile file = getDataFile(run);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            StoredTrends stored = (StoredTrends) file.read();
+            for (StoredTrend trend : stored.trends) {
+                if (trend.matches(key)) {
+                    return trend.toDataset();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the persisted trends of the given build, if any, as they no longer match its result.
+     */
+    static void forget(Run<?, ?> run) {
+        File file = getDataFile(run).getFile();
+        if (file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Failed to delete {0}", file);
+        }
+    }
+
+    private static XmlFile getDataFile(Run<?, ?> run) {
+        return new XmlFile(XSTREAM, new File(run.getRootDir(), FILE_NAME));
+    }
+
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run> {
+        @Override
+        public void onCompleted(Run run, TaskListener listener) {
+            if (DISABLED) {
+                return;
+            }
+            AbstractTestResultAction<?> action = run.getAction(AbstractTestResultAction.class);
+            // the trends of other kinds of test results cannot be broken down by project level
+            if (action instanceof TestResultAction) {
+                schedule(action);
+            }
+        }
+
+        @Override
+        public void onDeleted(Run run) {
+            TrendDatasetCache.invalidate(run);
+        }
+    }
+
+    /**
+     * The precomputed trends of a build.
+     */
+    static final class StoredTrends {
+        final List<StoredTrend> trends = new ArrayList<>();
+    }
+
+    /**
+     * A {@link TrendDataset} in a form that can be persisted, with builds referred to by number and display name.
+     */
+    static final class StoredTrend {
+        String trendType;
+        String projectLevel;
+        String metricName;
+        String orderBy;
+        boolean failureOnly;
+
+        /**
+         * Category data: series, build number and value of every data item.
+         */
+        List<String> series;
+        List<Integer> builds;
+        List<Double> values;
+        Map<Integer, String> displayNames;
+        Map<Integer, String> failToolTip, skipToolTip, totalToolTip, lengthyToolTip;
+
+        /**
+         * XY data: series key, x and y of every data item.
+         */
+        List<Integer> xySeries;
+        List<Double> xs;
+        List<Double> ys;
+        List<String> mostFailedTestCases;
+        Map<Integer, List<Integer>> flapperInfo;
+        Map<Integer, Integer> flapperCountToolTip;
+
+        static StoredTrend of(TrendDatasetCache.Key key, TrendDataset dataset) {
+            StoredTrend t = new StoredTrend();
+            t.trendType = key.getTrendType();
+            t.projectLevel = key.getProjectLevel();
+            t.metricName = key.getMetricName();
+            t.orderBy = key.getOrderBy();
+            t.failureOnly = key.isFailureOnly();
+            if (dataset.isXY()) {
+                t.xySeries = new ArrayList<>();
+                t.xs = new ArrayList<>();
+                t.ys = new ArrayList<>();
+                XYSeriesCollection xy = (XYSeriesCollection) dataset.createXYDataset();
+                for (int s = 0; s < xy.getSeriesCount(); s++) {
+                    XYSeries xySeries = xy.getSeries(s);
+                    for (int i = 0; i < xySeries.getItemCount(); i++) {
+                        t.xySeries.add(((Number) xySeries.getKey()).intValue());
+                        t.xs.add(xySeries.getX(i).doubleValue());
+                        Number y = xySeries.getY(i);
+                        t.ys.add(y == null ? null : y.doubleValue());
+                    }
+                }
+                t.mostFailedTestCases = new ArrayList<>(dataset.mostFailedTestCases);
+                t.flapperInfo = new HashMap<>();
+                for (Map.Entry<Integer, ? extends List<Integer>> e : dataset.flapperInfo.entrySet()) {
+                    t.flapperInfo.put(e.getKey(), new ArrayList<>(e.getValue()));
+                }
+                t.flapperCountToolTip = new HashMap<>(dataset.flapperCountToolTip);
+            } else {
+                t.series = new ArrayList<>();
+                t.builds = new ArrayList<>();
+                t.values = new ArrayList<>();
+                t.displayNames = new HashMap<>();
+                CategoryDataset category = dataset.createCategoryDataset();
+                for (int r = 0; r < category.getRowCount(); r++) {
+                    for (int c = 0; c < category.getColumnCount(); c++) {
+                        Number value = category.getValue(r, c);
+                        if (value != null) {
+                            TrendDataset.BuildLabel label = (TrendDataset.BuildLabel) category.getColumnKey(c);
+                            t.series.add((String) category.getRowKey(r));
+                            t.builds.add(label.number);
+                            t.values.add(value.doubleValue());
+                            t.displayNames.put(label.number, label.displayName);
+                        }
+                    }
+                }
+                t.failToolTip = byNumber(dataset.failToolTip);
+                t.skipToolTip = byNumber(dataset.skipToolTip);
+                t.totalToolTip = byNumber(dataset.totalToolTip);
+                t.lengthyToolTip = byNumber(dataset.lengthyToolTip);
+            }
+            return t;
+        }
+
+        private static Map<Integer, String> byNumber(Map<TrendDataset.BuildLabel, String> toolTips) {
+            Map<Integer, String> result = new HashMap<>();
+            for (Map.Entry<TrendDataset.BuildLabel, String> e : toolTips.entrySet()) {
+                result.put(e.getKey().number, e.getValue());
+            }
+            return result;
+        }
+
+        boolean matches(TrendDatasetCache.Key key) {
+            return failureOnly == key.isFailureOnly()
+                    && eq(trendType, key.getTrendType())
+                    && eq(projectLevel, key.getProjectLevel())
+                    && eq(metricName, key.getMetricName())
+                    && eq(orderBy, key.getOrderBy());
+        }
+
+        private static boolean eq(Object lhs, Object rhs) {
+            return lhs == null ? rhs == null : lhs.equals(rhs);
+        }
+
+        /**
+         * Turns the stored data back into a dataset. The builds are labelled with the display names they had
+         * when the trend was computed, and are not loaded.
+         */
+        TrendDataset toDataset() {
+            if (xySeries != null) {
+                Map<Integer, XYSeries> bySeries = new LinkedHashMap<>();
+                for (int i = 0; i < xySeries.size(); i++) {
+                    XYSeries s = bySeries.get(xySeries.get(i));
+                    if (s == null) {
+                        s = new XYSeries(xySeries.get(i));
+                        bySeries.put(xySeries.get(i), s);
+                    }
+                    s.add(xs.get(i), ys.get(i));
+                }
+                XYSeriesCollection dataset = new XYSeriesCollection();
+                for (XYSeries s : bySeries.values()) {
+                    dataset.addSeries(s);
+                }
+                return TrendDataset.flakyTests(dataset, mostFailedTestCases, flapperInfo, flapperCountToolTip);
+            }
+
+            DataSetBuilder<String, TrendDataset.BuildLabel> dsb = new DataSetBuilder<>();
+            for (int i = 0; i < builds.size(); i++) {
+                dsb.add(values.get(i), series.get(i), label(builds.get(i)));
+            }
+            if (AbstractTestResultAction.LENGTHY_TESTS.equals(trendType)) {
+                return TrendDataset.lengthyTests(dsb, byLabel(lengthyToolTip));
+            }
+            return TrendDataset.buildAnalysis(dsb, byLabel(failToolTip), byLabel(skipToolTip), byLabel(totalToolTip));
+        }
+
+        private TrendDataset.BuildLabel label(int number) {
+            String displayName = displayNames == null ? null : displayNames.get(number);
+            // stored before display names were kept; the default display name of a build
+            return new TrendDataset.BuildLabel(number, displayName != null ? displayName : "#" + number);
+        }
+
+        private Map<TrendDataset.BuildLabel, String> byLabel(Map<Integer, String> toolTips) {
+            Map<TrendDataset.BuildLabel, String> result = new HashMap<>();
+            if (toolTips != null) {
+                for (Map.Entry<Integer, String> e : toolTips.entrySet()) {
+                    result.put(label(e.getKey()), e.getValue());
+                }
+            }
+            return result;
+        }
+    }
+}
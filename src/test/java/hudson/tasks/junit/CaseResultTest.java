@@ -208,6 +208,28 @@ public class CaseResultTest {
         wc.goTo("job/foo/1/testReport/org.twia.vendor/VendorManagerTest/testCreateAdjustingFirm/summary","text/plain");
     }
 
+    @Test
+    public void testStatusAgainstPreviousBuild() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("junit.xml").copyFrom(
+                    getClass().getResource("pipeline/junit-report-testTrends-first-" + build.getNumber() + ".xml"));
+                return true;
+            }
+        });
+        p.getPublishersList().add(new JUnitResultArchiver("*.xml"));
+        rule.assertBuildStatus(Result.SUCCESS, p.scheduleBuild2(0).get());
+        rule.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+        FreeStyleBuild b = rule.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+
+        SuiteResult suite = b.getAction(TestResultAction.class).getResult().getSuites().iterator().next();
+        assertEquals(CaseResult.Status.FAILED, suite.getCase("testGetVendorFirmKeyForVendorRep").getStatus());
+        assertEquals(CaseResult.Status.FIXED, suite.getCase("testGetRevokedClaimsForAdjustingFirm").getStatus());
+        assertEquals(CaseResult.Status.REGRESSION, suite.getCase("testCreateVendorFirm").getStatus());
+        assertEquals(CaseResult.Status.PASSED, suite.getCase("testUpdateVendorFirm").getStatus());
+    }
+
     private FreeStyleBuild configureTestBuild(String projectName) throws Exception {
         FreeStyleProject p = projectName == null ? rule.createFreeStyleProject() : rule.createFreeStyleProject(projectName);
         p.getBuildersList().add(new TestBuilder() {
@@ -0,0 +1,60 @@
+package hudson.tasks.junit;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FailureSignatureTest {
+
+    @Test
+    public void normalize() {
+        assertEquals("java.lang.AssertionError: expected:<?> but was:<?>\n"
+                        + "org.junit.Assert.fail(Assert.java)\n"
+                        + "com.foo.Client.lambda$send(Client.java)\n"
+                        + "com.foo.Client.run(Unknown Source)\n"
+                        + "Caused by: java.io.IOException: timeout after # ms reading ? from #\n"
+                        + "com.foo.Pipe.read(Pipe.java)\n",
+                FailureSignature.normalize("java.lang.AssertionError: expected:<5> but was:<6>\n"
+                        + "\tat org.junit.Assert.fail(Assert.java:88)\n"
+                        + "\tat com.foo.Client.lambda$send$3(Client.java:42)\n"
+                        + "\tat com.foo.Client$$Lambda$17/0x0000000800c0b840.run(Unknown Source)\n"
+                        + "Caused by: java.io.IOException: timeout after 3000 ms reading \"/tmp/x\" from 0x7f3a\n"
+                        + "\tat com.foo.Pipe.read(Pipe.java:1)\n"
+                        + "\t... 12 more\n"));
+    }
+
+    @Test
+    public void onlyTopFramesCount() {
+        StringBuilder a = new StringBuilder("java.lang.IllegalStateException\n");
+        StringBuilder b = new StringBuilder("java.lang.IllegalStateException\n");
+        for (int i = 0; i < FailureSignature.MAX_FRAMES; i++) {
+            a.append("\tat com.foo.Frame").append(i).append(".run(Frame.java:1)\n");
+            b.append("\tat com.foo.Frame").append(i).append(".run(Frame.java:2)\n");
+        }
+        b.append("\tat com.foo.Deeper.run(Deeper.java:1)\n");
+        assertEquals(FailureSignature.of(a.toString()), FailureSignature.of(b.toString()));
+        assertNotEquals(FailureSignature.of(a.toString()),
+                FailureSignature.of(a.toString().replace("IllegalStateException", "IllegalArgumentException")));
+    }
+
+    @Test
+    public void failuresByCause() throws Exception {
+        TestResult result = new TestResult();
+        result.parse(new File(FailureSignatureTest.class.getResource("failure-clusters.xml").toURI()), null);
+        result.tally();
+
+        List<FailureCluster> clusters = result.getFailuresByCause();
+        assertEquals(2, clusters.size());
+        assertEquals(2, clusters.get(0).getCount());
+        assertEquals("java.net.ConnectException: Connection refused to 'db-1':5432", clusters.get(0).getSummary());
+        assertEquals(1, clusters.get(1).getCount());
+        assertEquals("compare", clusters.get(1).getExample().getName());
+
+        SuiteResult suite = result.getSuites().iterator().next();
+        assertEquals(suite.getCase("connectFirst").getFailureSignature(), suite.getCase("connectSecond").getFailureSignature());
+        assertNull(suite.getCase("passes").getFailureSignature());
+    }
+}
@@ -27,12 +27,15 @@ import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.Project;
 import hudson.model.Result;
+import hudson.tasks.test.TestResultHistory;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.recipes.LocalData;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -111,4 +114,58 @@ public class HistoryTest {
         assertTrue("eleanor failed", !eleanorCase.isPassed());
         assertEquals("eleanor has failed since build 3", 3, eleanorCase.getFailedSince()); 
     }
+
+    @LocalData
+    @Test
+    public void testPage() throws Exception {
+        TestResult tr = project.getBuildByNumber(7).getAction(TestResultAction.class).getResult();
+        History history = new History(tr);
+
+        // builds 1, 2 and 6 have no test results
+        History.Page page = history.getPage(0, 3);
+        assertEquals(2, page.getBuilds().size());
+        assertEquals(Integer.valueOf(7), page.getNewest());
+        assertEquals(5, page.getBuilds().get(1).getNumber());
+        assertEquals(7, page.getList().get(0).getRun().getNumber());
+        assertNull("newest page has no newer page", page.getNewer());
+        assertEquals(Integer.valueOf(4), page.getOlder());
+
+        page = history.getPage(page.getOlder(), 3);
+        assertEquals(Integer.valueOf(4), page.getNewest());
+        assertEquals(2, page.getBuilds().size());
+        assertEquals(Integer.valueOf(7), page.getNewer());
+        assertEquals(Integer.valueOf(1), page.getOlder());
+
+        page = history.getPage(page.getOlder(), 3);
+        assertTrue(page.getBuilds().isEmpty());
+        assertEquals(Integer.valueOf(4), page.getNewer());
+        assertNull("oldest page has no older page", page.getOlder());
+    }
+
+    @LocalData
+    @Test
+    public void testHistoryBudget() throws Exception {
+        FreeStyleBuild build7 = project.getBuildByNumber(7);
+        List<Integer> numbers = new ArrayList<>();
+        for (TestResultAction a : TestResultHistory.fromBuild(build7, TestResultAction.class)) {
+            numbers.add(a.run.getNumber());
+        }
+        assertEquals(Arrays.asList(7, 5, 4, 3), numbers);
+
+        TestResultHistory<TestResultAction> walk = TestResultHistory.before(build7, TestResultAction.class).withMaxBuilds(2);
+        numbers.clear();
+        for (TestResultAction a : walk) {
+            numbers.add(a.run.getNumber());
+        }
+        assertEquals(Arrays.asList(5), numbers);
+        assertTrue(walk.isTruncated());
+        assertEquals(4, walk.getResumeBuild().getNumber());
+
+        walk = TestResultHistory.before(build7, TestResultAction.class).withMaxBytes(1);
+        numbers.clear();
+        for (TestResultAction a : walk) {
+            numbers.add(a.run.getNumber());
+        }
+        assertEquals("walk stops once the first result used up the bytes", Arrays.asList(5), numbers);
+    }
 }
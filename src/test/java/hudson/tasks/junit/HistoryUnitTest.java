@@ -0,0 +1,27 @@
+package hudson.tasks.junit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryUnitTest {
+
+    @Test
+    public void downsample() {
+        List<hudson.tasks.test.TestResult> list = new ArrayList<>();
+        for (int i = 0; i < History.MAX_POINTS * 2 + 1; i++) {
+            list.add(new TestResult());
+        }
+        List<List<hudson.tasks.test.TestResult>> buckets = History.downsample(list);
+        assertTrue(buckets.size() <= History.MAX_POINTS);
+        int total = 0;
+        for (List<hudson.tasks.test.TestResult> bucket : buckets) {
+            total += bucket.size();
+        }
+        assertEquals(list.size(), total);
+    }
+}
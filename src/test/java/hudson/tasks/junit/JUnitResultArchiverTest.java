@@ -33,17 +33,21 @@ import hudson.matrix.TextAxis;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.UnprotectedRootAction;
+import hudson.security.ACL;
 import hudson.slaves.DumbSlave;
+import hudson.tasks.test.PackageTrie;
 import hudson.tasks.test.TestObject;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import hudson.util.HttpResponses;
+import jenkins.model.Jenkins;
 import org.apache.commons.io.FileUtils;
 import org.jenkinsci.plugins.structs.describable.DescribableModel;
 import org.junit.Assume;
@@ -83,6 +87,7 @@ import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.JenkinsRule.WebClient;
 import org.jvnet.hudson.test.RandomlyFails;
 import org.jvnet.hudson.test.SingleFileSCM;
+import org.jvnet.hudson.test.TestBuilder;
 import org.jvnet.hudson.test.TestExtension;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.HttpResponse;
@@ -160,6 +165,16 @@ public class JUnitResultArchiverTest {
         FreeStyleBuild build = project.getBuildByNumber(1);
 
         assertTestResults(build);
+
+        // the package tree is kept next to the result rather than in build.xml
+        assertTrue(new File(build.getRootDir(), "junitPackages.xml").exists());
+        assertThat(FileUtils.readFileToString(new File(build.getRootDir(), "build.xml"), StandardCharsets.UTF_8),
+                not(containsString("packageTrie")));
+        PackageTrie.Node root = build.getAction(TestResultAction.class).getPackageTrie().getRoot();
+        assertEquals(132, root.getTotalCount());
+        assertNotNull(root.getFailToolTip());
+        assertThat(FileUtils.readFileToString(new File(build.getRootDir(), "build.xml"), StandardCharsets.UTF_8),
+                not(containsString("ToolTip")));
     }
 
     private void reloadJenkins() throws Exception {
@@ -236,6 +251,44 @@ public class JUnitResultArchiverTest {
         assertEquals("should have 8 total tests", 8, result.getTotalCount());
         assertEquals(/* ⅞ = 87.5% */87, testResultAction.getBuildHealth().getScore());
     }
+
+    @Test public void failedSinceRecordedFromPreviousBuildOnly() throws Exception {
+        project.getPublishersList().removeAll(JUnitResultArchiver.class);
+        project.getBuildersList().add(new SimpleArchive("A", 1, 1));
+        FreeStyleBuild b1 = j.assertBuildStatus(Result.UNSTABLE, project.scheduleBuild2(0).get());
+        FreeStyleBuild b2 = j.assertBuildStatus(Result.UNSTABLE, project.scheduleBuild2(0).get());
+        assertEquals(1, b2.getAction(TestResultAction.class).getResult().getSuite("A").getCase("failing0").getFailedSince());
+        // the streak is carried over by the previous build alone
+        assertTrue(new File(b1.getRootDir(), "junitResult.xml").delete());
+        FreeStyleBuild b3 = j.assertBuildStatus(Result.UNSTABLE, project.scheduleBuild2(0).get());
+        CaseResult failing = b3.getAction(TestResultAction.class).getResult().getSuite("A").getCase("failing0");
+        assertEquals(1, failing.getFailedSince());
+        assertEquals(3, failing.getAge());
+        assertEquals(0, b3.getAction(TestResultAction.class).getResult().getSuite("A").getCase("passing0").getFailedSince());
+    }
+
+    @Test public void failedSinceCarriedOverSkippedBuild() throws Exception {
+        project.getBuildersList().clear();
+        final String[] outcome = {"<error message=\"failure\"/>"};
+        project.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("A.xml").write("<testsuite name=\"A\"><testcase classname=\"A\" name=\"flaky\">"
+                        + outcome[0] + "</testcase></testsuite>", "UTF-8");
+                return true;
+            }
+        });
+        j.assertBuildStatus(Result.UNSTABLE, project.scheduleBuild2(0).get());
+        outcome[0] = "<skipped/>";
+        j.assertBuildStatusSuccess(project.scheduleBuild2(0));
+        outcome[0] = "<error message=\"failure\"/>";
+        FreeStyleBuild b3 = j.assertBuildStatus(Result.UNSTABLE, project.scheduleBuild2(0).get());
+        // skipping a failing test does not end its streak
+        CaseResult flaky = b3.getAction(TestResultAction.class).getResult().getSuite("A").getCase("flaky");
+        assertEquals(1, flaky.getFailedSince());
+        assertEquals(3, flaky.getAge());
+    }
+
     public static final class SimpleArchive extends Builder {
         private final String name;
         private final int pass;
@@ -310,6 +363,89 @@ public class JUnitResultArchiverTest {
         }
     }
 
+    @Test public void parallelTestDataPublishers() throws Exception {
+        TestDataContributor.PARALLEL = true;
+        try {
+            FreeStyleProject p = j.createFreeStyleProject();
+            p.getBuildersList().add(new TestBuilder() {
+                @Override
+                public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                    build.getWorkspace().child("junit.xml").copyFrom(getClass().getResource("junit-report-20090516.xml"));
+                    return true;
+                }
+            });
+            JUnitResultArchiver a = new JUnitResultArchiver("*.xml");
+            a.setTestDataPublishers(Arrays.<TestDataPublisher>asList(
+                    new NamedDataPublisher("slow", 500), new NamedDataPublisher("none", 0), new NamedDataPublisher("fast", 0)));
+            p.getPublishersList().add(a);
+            FreeStyleBuild b = j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+
+            // in the configured order, not in the order they completed in
+            List<TestResultAction.Data> data = b.getAction(TestResultAction.class).getData();
+            assertEquals(2, data.size());
+            assertEquals("slow", ((NamedData) data.get(0)).name);
+            assertEquals("fast", ((NamedData) data.get(1)).name);
+            // as the build, not as whoever the pool threads run as
+            assertEquals(ACL.SYSTEM.getName(), ((NamedData) data.get(0)).user);
+            assertEquals(ACL.SYSTEM.getName(), ((NamedData) data.get(1)).user);
+            j.assertLogContains("NamedDataPublisher contributed test data in", b);
+        } finally {
+            TestDataContributor.PARALLEL = false;
+        }
+    }
+
+    public static class NamedDataPublisher extends TestDataPublisher {
+        private final String name;
+        private final long delay;
+        NamedDataPublisher(String name, long delay) {
+            this.name = name;
+            this.delay = delay;
+        }
+        @Override public TestResultAction.Data contributeTestData(Run<?,?> run, FilePath workspace, Launcher launcher, TaskListener listener, TestResult testResult) throws IOException, InterruptedException {
+            Thread.sleep(delay);
+            return name.equals("none") ? null : new NamedData(name, Jenkins.getAuthentication().getName());
+        }
+        @TestExtension("parallelTestDataPublishers") public static class DescriptorImpl extends Descriptor<TestDataPublisher> {
+            @Override public String getDisplayName() {
+                return "NamedDataPublisher";
+            }
+        }
+    }
+
+    public static class NamedData extends TestResultAction.Data {
+        private final String name;
+        private final String user;
+        NamedData(String name, String user) {
+            this.name = name;
+            this.user = user;
+        }
+        @Override public List<? extends TestAction> getTestAction(hudson.tasks.junit.TestObject testObject) {
+            return Collections.emptyList();
+        }
+    }
+
+    @Test public void mergeKeepsCallerResults() throws Exception {
+        FreeStyleBuild b = j.buildAndAssertSuccess(j.createFreeStyleProject());
+        TestResult first = new TestResult();
+        first.parse(new File(getClass().getResource("junit-report-1463.xml").toURI()), null);
+        first.tally();
+        TestResult second = new TestResult();
+        second.parse(new File(getClass().getResource("junit-report-2874.xml").toURI()), null);
+        second.tally();
+
+        TestResultAction action = JUnitResultArchiver.mergeIntoAction(b, first, TaskListener.NULL);
+        assertSame(action, b.getAction(TestResultAction.class));
+        assertEquals(6, action.getTotalCount());
+        assertSame(action, JUnitResultArchiver.mergeIntoAction(b, second, TaskListener.NULL));
+        assertEquals(7, action.getTotalCount());
+
+        // the results of the callers are neither the one of the action nor merged into
+        assertNotSame(first, action.getResult());
+        assertEquals(1, first.getSuites().size());
+        assertEquals(6, first.getTotalCount());
+        assertEquals(1, second.getSuites().size());
+    }
+
     @Test public void emptyDirectoryAllowEmptyResult() throws Exception {
         JUnitResultArchiver a = new JUnitResultArchiver("TEST-*.xml");
         a.setAllowEmptyResults(true);
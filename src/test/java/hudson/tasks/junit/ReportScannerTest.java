@@ -0,0 +1,53 @@
+package hudson.tasks.junit;
+
+import hudson.Util;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReportScannerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void matchesLikeDirectoryScanner() throws Exception {
+        File ws = tmp.getRoot();
+        for (String path : new String[]{"TEST-root.xml", "a/build/test-results/TEST-a.xml", "a/build/classes/A.class",
+                "b/TEST-b.xml", "b/other.xml", "b/c/d/TEST-d.xml", ".git/refs/TEST-git.xml", "CVS/TEST-cvs.xml"}) {
+            File file = new File(ws, path);
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            assertTrue(file.createNewFile());
+        }
+        for (String pattern : new String[]{"**/TEST-*.xml", "b/*.xml, TEST-root.xml", "a/", "**/*.xml", "b/**/d/*.xml",
+                "**/.git/**/*.xml", "nothing/**"}) {
+            List<String> expected = new ArrayList<>(Arrays.asList(Util.createFileSet(ws, pattern).getDirectoryScanner().getIncludedFiles()));
+            Collections.sort(expected);
+            List<String> actual = new ArrayList<>();
+            for (File file : new ReportScanner(ws, pattern).scan()) {
+                actual.add(file.getPath().substring(ws.getPath().length() + 1));
+            }
+            assertEquals(pattern, expected, actual);
+        }
+    }
+
+    @Test
+    public void attributesReadOnce() throws Exception {
+        File report = tmp.newFile("TEST-a.xml");
+        assertTrue(report.setLastModified(1000));
+        List<File> found = new ReportScanner(tmp.getRoot(), "*.xml").scan();
+        assertEquals(1, found.size());
+        assertTrue(report.delete());
+        // as found, even though the file is gone
+        assertEquals(1000, found.get(0).lastModified());
+        assertEquals(0, found.get(0).length());
+    }
+}
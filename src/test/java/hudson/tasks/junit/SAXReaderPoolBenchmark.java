@@ -0,0 +1,58 @@
+package hudson.tasks.junit;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Compares parsing many small reports with and without {@link SAXReaderPool}. Not run as a test; run its
+ * {@link #main(String[])} method and look at the last rounds.
+ */
+public class SAXReaderPoolBenchmark {
+
+    private static final int FILES = 50000;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("SAXReaderPoolBenchmark").toFile();
+        try {
+            String[] names = new String[FILES];
+            for (int i = 0; i < FILES; i++) {
+                names[i] = "TEST-pkg.Test" + i + ".xml";
+                FileUtils.writeStringToFile(new File(dir, names[i]),
+                        "<?xml version='1.0' encoding='UTF-8'?>\n" +
+                        "<testsuite name='pkg.Test" + i + "' tests='1' failures='0' errors='0' time='0.01'>\n" +
+                        "  <testcase classname='pkg.Test" + i + "' name='test' time='0.01'/>\n" +
+                        "</testsuite>\n", "UTF-8");
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                parse(dir, names);
+                long unpooled = System.nanoTime() - start;
+                start = System.nanoTime();
+                try (Closeable readers = SAXReaderPool.open()) {
+                    parse(dir, names);
+                }
+                long pooled = System.nanoTime() - start;
+                System.out.printf(Locale.ENGLISH, "round %d: %,d ms pooled, %,d ms with a reader per file%n",
+                        round, pooled / 1000000, unpooled / 1000000);
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static void parse(File dir, String[] names) throws IOException {
+        TestResult result = new TestResult();
+        result.parse(0, dir, null, names);
+        result.tally();
+        if (result.getTotalCount() != FILES) {
+            throw new IllegalStateException("Parsed " + result.getTotalCount() + " tests");
+        }
+    }
+}
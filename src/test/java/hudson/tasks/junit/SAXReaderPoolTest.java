@@ -0,0 +1,54 @@
+package hudson.tasks.junit;
+
+import org.apache.commons.io.FileUtils;
+import org.dom4j.DocumentException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.*;
+
+public class SAXReaderPoolTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void reusedWhileOpen() throws Exception {
+        assertNotSame(SAXReaderPool.get(), SAXReaderPool.get());
+        try (Closeable outer = SAXReaderPool.open()) {
+            try (Closeable inner = SAXReaderPool.open()) {
+                assertSame(SAXReaderPool.get(), SAXReaderPool.get());
+            }
+            // still open until the outer scope is closed
+            assertSame(SAXReaderPool.get(), SAXReaderPool.get());
+        }
+        assertNotSame(SAXReaderPool.get(), SAXReaderPool.get());
+    }
+
+    @Test
+    public void reusedAfterBrokenReport() throws Exception {
+        File broken = tmp.newFile("broken.xml");
+        FileUtils.writeStringToFile(broken, "<testsuite name='broken'><testcase", "UTF-8");
+        File report = resource("junit-report-1463.xml");
+        try (Closeable readers = SAXReaderPool.open()) {
+            try {
+                SuiteResult.parse(broken, false, null);
+                fail();
+            } catch (DocumentException expected) {
+                // the reader is reset by the next parse
+            }
+            for (int i = 0; i < 2; i++) {
+                assertEquals(6, SuiteResult.parse(report, false, null).get(0).getCases().size());
+            }
+        }
+    }
+
+    private File resource(String name) throws URISyntaxException {
+        return new File(SAXReaderPoolTest.class.getResource(name).toURI());
+    }
+}
@@ -29,6 +29,21 @@ public class TestNameTransformerTest {
         assertEquals(UNIQUE_NAME_FOR_TEST + "-transformed", TestNameTransformer.getTransformedName(UNIQUE_NAME_FOR_TEST));
     }
 
+    @Test
+    public void transformerAddedLater() throws Exception {
+        CaseResult c = new CaseResult(null, "added-later", null);
+        assertEquals("added-later", c.getTransformedTestName());
+        TestNameTransformer.all().add(new TestNameTransformer() {
+            @Override
+            public String transformName(String name) {
+                return name.equals("added-later") ? name + "-transformed" : name;
+            }
+        });
+        // the cached name is dropped along with the snapshot of the transformers
+        assertEquals("added-later-transformed", c.getTransformedTestName());
+        assertEquals(UNIQUE_NAME_FOR_TEST + "-transformed", TestNameTransformer.getTransformedName(UNIQUE_NAME_FOR_TEST));
+    }
+
     @Issue("JENKINS-61787")
     @Test
     public void testNameIsNotTransformedRemotely() throws Exception {
@@ -0,0 +1,60 @@
+package hudson.tasks.junit;
+
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.*;
+
+public class TestResultDiffTest {
+
+    private static TestResult parse(String name) throws Exception {
+        TestResult result = new TestResult();
+        result.parse(getDataFile(name), null);
+        return result;
+    }
+
+    private static File getDataFile(String name) throws URISyntaxException {
+        return new File(TestResultDiffTest.class.getResource(name).toURI());
+    }
+
+    @Test
+    public void changesBetweenBuilds() throws Exception {
+        TestResultDiff diff = TestResultDiff.compare(parse("pipeline/junit-report-testTrends-first-2.xml"),
+                parse("pipeline/junit-report-testTrends-first-3.xml"));
+        assertEquals(1, diff.getNewFailures().size());
+        assertEquals("org.twia.vendor.VendorManagerTest.testCreateVendorFirm", diff.getNewFailures().get(0).getName());
+        assertEquals(1, diff.getFixed().size());
+        assertEquals("org.twia.vendor.VendorManagerTest.testGetRevokedClaimsForAdjustingFirm", diff.getFixed().get(0).getName());
+        assertEquals(1, diff.getSlower().size());
+        assertEquals("org.twia.vendor.VendorManagerTest.testUpdateVendorFirm", diff.getSlower().get(0).getName());
+        assertTrue(diff.getAdded().isEmpty());
+        assertTrue(diff.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void addedAndRemovedTests() throws Exception {
+        TestResultDiff diff = TestResultDiff.compare(parse("pipeline/junit-report-testTrends-first-1.xml"),
+                parse("junit-report-2874.xml"));
+        assertEquals(8, diff.getRemoved().size());
+        assertEquals(1, diff.getAdded().size());
+        assertNull(diff.getAdded().get(0).getBase());
+        assertNull(diff.getRemoved().get(0).getTarget());
+    }
+
+    @Test
+    public void json() throws Exception {
+        StringWriter w = new StringWriter();
+        TestResultDiff.writeJson(parse("pipeline/junit-report-testTrends-first-2.xml"),
+                parse("pipeline/junit-report-testTrends-first-3.xml"), w);
+        JSONObject json = JSONObject.fromObject(w.toString());
+        assertEquals(3, json.getJSONArray("changes").size());
+        assertEquals(1, json.getJSONObject("counts").getInt("NEW_FAILURE"));
+        assertEquals(1, json.getJSONObject("counts").getInt("FIXED"));
+        assertEquals(1, json.getJSONObject("counts").getInt("SLOWER"));
+        assertEquals(0, json.getJSONObject("counts").getInt("ADDED"));
+    }
+}
@@ -0,0 +1,79 @@
+package hudson.tasks.junit;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exports the stored result also used by {@link TestResultTest#testXmlCompatibility()}.
+ */
+public class TestResultExportTest {
+
+    private static JSONObject export(Set<String> fields, Set<String> statuses, int cursor, int limit) throws Exception {
+        StringWriter w = new StringWriter();
+        try (InputStream in = TestResultExportTest.class.getResourceAsStream("junitResult.xml")) {
+            new TestResultExport(fields, statuses, cursor, limit).write(in, w, TestResultExport.Format.JSON);
+        }
+        return JSONObject.fromObject(w.toString());
+    }
+
+    private static int countCases(JSONObject export) {
+        int count = 0;
+        JSONArray suites = export.getJSONArray("suites");
+        for (int i = 0; i < suites.size(); i++) {
+            count += suites.getJSONObject(i).getJSONArray("cases").size();
+        }
+        return count;
+    }
+
+    @Test
+    public void allCasesWithDefaultFields() throws Exception {
+        JSONObject export = export(Collections.<String>emptySet(), Collections.<String>emptySet(), 0, 100);
+        assertEquals(9, countCases(export));
+        assertFalse(export.has("next"));
+        JSONObject first = export.getJSONArray("suites").getJSONObject(0).getJSONArray("cases").getJSONObject(0);
+        assertEquals("service.EchoServletIT", first.getString("className"));
+        assertEquals("sayHello", first.getString("name"));
+        assertEquals("skipped", first.getString("status"));
+        assertFalse(first.has("errorStackTrace"));
+    }
+
+    @Test
+    public void statusFilterAndFieldSelection() throws Exception {
+        JSONObject export = export(new HashSet<>(Arrays.asList("name", "errorStackTrace")),
+                Collections.singleton("failed"), 0, 100);
+        assertEquals(1, countCases(export));
+        JSONObject suite = export.getJSONArray("suites").getJSONObject(0);
+        assertEquals("broken", suite.getString("name"));
+        JSONObject failed = suite.getJSONArray("cases").getJSONObject(0);
+        assertEquals("becomeUglier", failed.getString("name"));
+        assertTrue(failed.getString("errorStackTrace").startsWith("java.lang.AssertionError"));
+        assertFalse(failed.has("className"));
+        assertFalse(failed.has("status"));
+    }
+
+    @Test
+    public void pages() throws Exception {
+        JSONObject first = export(Collections.<String>emptySet(), Collections.<String>emptySet(), 0, 5);
+        assertEquals(5, countCases(first));
+        int next = first.getInt("next");
+        assertEquals(5, next);
+        JSONObject second = export(Collections.<String>emptySet(), Collections.<String>emptySet(), next, 5);
+        assertEquals(4, countCases(second));
+        assertFalse(second.has("next"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownField() {
+        new TestResultExport(Collections.singleton("nope"), Collections.<String>emptySet(), 0, 1);
+    }
+}
@@ -0,0 +1,101 @@
+package hudson.tasks.junit;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class TestResultFileTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @After
+    public void uncompressed() {
+        TestResultFile.COMPRESS = false;
+    }
+
+    private FreeStyleBuild build(FreeStyleProject p) throws Exception {
+        return j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+    }
+
+    @Test
+    public void compressedAndPlainResultsAreBothRead() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new JUnitResultArchiverTest.SimpleArchive("A", 2, 1));
+        FreeStyleBuild plain = build(p);
+        TestResultFile.COMPRESS = true;
+        FreeStyleBuild compressed = build(p);
+
+        assertTrue(new File(plain.getRootDir(), "junitResult.xml").exists());
+        assertFalse(new File(compressed.getRootDir(), "junitResult.xml").exists());
+        assertTrue(new File(compressed.getRootDir(), "junitResult.xml.gz").exists());
+
+        TestResultFile file = compressed.getAction(TestResultAction.class).getDataFile();
+        assertTrue(file.isCompressed());
+        assertTrue(file.getUncompressedLength() > file.getFile().length());
+        TestResult result = (TestResult) file.read();
+        result.tally();
+        assertEquals(3, result.getTotalCount());
+        assertEquals(1, result.getFailCount());
+        // the previous, plain result was read to record since when the test is failing
+        assertEquals(1, result.getSuite("A").getCase("failing0").getFailedSince());
+    }
+
+    @Test
+    public void compressExistingResult() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new JUnitResultArchiverTest.SimpleArchive("A", 2, 1));
+        FreeStyleBuild b = build(p);
+        TestResultFile file = b.getAction(TestResultAction.class).getDataFile();
+        long length = file.getFile().length();
+
+        assertTrue(file.compress());
+        assertFalse(file.compress());
+        assertFalse(new File(b.getRootDir(), "junitResult.xml").exists());
+        assertEquals(length, file.getUncompressedLength());
+        TestResult result = (TestResult) file.read();
+        result.tally();
+        assertEquals(3, result.getTotalCount());
+
+        // rewritten plain, the compressed file goes away
+        file.write(result);
+        assertFalse(file.isCompressed());
+        assertTrue(new File(b.getRootDir(), "junitResult.xml").exists());
+    }
+
+    @Test
+    public void laterResultWins() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new JUnitResultArchiverTest.SimpleArchive("A", 2, 1));
+        FreeStyleBuild b = build(p);
+        TestResultFile file = b.getAction(TestResultAction.class).getDataFile();
+        TestResult result = (TestResult) file.read();
+        result.tally();
+
+        // a staged result only replaces the stored one once committed
+        TestResultFile.COMPRESS = true;
+        TestResultFile.Staged discarded = file.stage(new TestResult());
+        TestResultFile.Staged committed = file.stage(result);
+        assertFalse(file.isCompressed());
+        discarded.discard();
+        committed.commit();
+        assertTrue(file.isCompressed());
+        assertFalse(new File(b.getRootDir(), "junitResult.xml").exists());
+        TestResult read = (TestResult) file.read();
+        read.tally();
+        assertEquals(3, read.getTotalCount());
+
+        String[] left = b.getRootDir().list();
+        for (String name : left) {
+            assertFalse(name, name.endsWith(".tmp"));
+        }
+    }
+}
@@ -246,6 +246,23 @@ public class TestResultTest {
         assertEquals("Wrong duration for test class", 93.0, class2.getDuration(), 0.1);
     }
 
+    @Test
+    public void statusesClassifiedAgainAfterTally() throws Exception {
+        TestResult testResult = new TestResult();
+        testResult.parse(getDataFile("junit-report-2874.xml"), null);
+        testResult.tally();
+        CaseResult c = testResult.getSuites().iterator().next().getCases().get(0);
+        CaseResult.Status alone = c.isPassed() ? CaseResult.Status.PASSED : CaseResult.Status.FAILED;
+
+        // as if classified against a previous build with the opposite outcome
+        CaseResult previous = new CaseResult(null, c.getName(), c.isPassed() ? "failure" : null);
+        c.classifyStatus(previous);
+        assertNotEquals(alone, c.getStatus());
+
+        testResult.tally();
+        assertEquals(alone, c.getStatus());
+    }
+
     private static final XStream XSTREAM = new XStream2();
 
     static {
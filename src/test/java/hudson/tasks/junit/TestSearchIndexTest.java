@@ -0,0 +1,134 @@
+package hudson.tasks.junit;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestSearchIndexTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final int maxLoads = TestSearchIndex.MAX_LOADS;
+
+    @After
+    public void disable() {
+        TestSearchIndex.ENABLED = false;
+        TestSearchIndex.MAX_LOADS = maxLoads;
+    }
+
+    @Test
+    public void ranges() {
+        int[] ranges = null;
+        for (int number : new int[]{1, 2, 3, 7, 5, 9, 6, 8}) {
+            ranges = TestSearchIndex.add(ranges, number);
+        }
+        assertEquals("1-3,5-9", TestSearchIndex.formatRanges(ranges));
+        ranges = TestSearchIndex.add(ranges, 4);
+        assertEquals("1-9", TestSearchIndex.formatRanges(ranges));
+        assertArrayEquals(new int[]{1, 9}, TestSearchIndex.parseRanges("1-9"));
+
+        int[] a = TestSearchIndex.parseRanges("1-5,8,10-20");
+        int[] b = TestSearchIndex.parseRanges("3-8,12,15-30");
+        assertEquals("3-5,8,12,15-20", TestSearchIndex.formatRanges(TestSearchIndex.intersect(a, b)));
+    }
+
+    @Test
+    public void words() {
+        assertEquals(Arrays.asList("com", "foo", "bartest", "testconnection"),
+                Arrays.asList(TestSearchIndex.words("com.foo.BarTest.testConnection").toArray()));
+        // numbers and single characters are left out
+        assertEquals(Arrays.asList("timeout", "after", "ms"),
+                Arrays.asList(TestSearchIndex.words("Timeout after 500 ms: x").toArray()));
+    }
+
+    @Test
+    public void normalizeStackTrace() {
+        String stackTrace = "java.net.SocketException: Connection reset\n"
+                + "\tat java.net.SocketInputStream.read(SocketInputStream.java:210)\n"
+                + "\tat com.foo.Client.lambda$send$3(Client.java:42)\n"
+                + "\tat com.foo.Client$$Lambda$17/1234567.run(Unknown Source)\n"
+                + "\tat com.foo.Three.three(Three.java:3)\n"
+                + "\tat com.foo.Four.four(Four.java:4)\n"
+                + "\tat com.foo.Five.five(Five.java:5)\n"
+                + "Caused by: java.io.IOException: broken pipe\n"
+                + "\tat com.foo.Pipe.write(Pipe.java:1)\n"
+                + "\t... 12 more\n";
+        assertEquals("java.net.SocketException: Connection reset\n"
+                + "java.net.SocketInputStream.read(SocketInputStream.java)\n"
+                + "com.foo.Client.lambda$send(Client.java)\n"
+                + "com.foo.Client.run(Unknown Source)\n"
+                + "com.foo.Three.three(Three.java)\n"
+                + "com.foo.Four.four(Four.java)\n"
+                + "Caused by: java.io.IOException: broken pipe\n"
+                + "com.foo.Pipe.write(Pipe.java)\n", TestSearchIndex.normalizeStackTrace(stackTrace));
+    }
+
+    @Test
+    public void searchRebuiltIndex() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("junit.xml").copyFrom(
+                        getClass().getResource("/hudson/tasks/junit/junit-report-20090516.xml"));
+                return true;
+            }
+        });
+        p.getPublishersList().add(new JUnitResultArchiver("*.xml"));
+        j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+        j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+
+        // the builds were recorded while disabled, so the index is rebuilt from them
+        TestSearchIndex.ENABLED = true;
+        TestSearchIndex index = TestSearchIndex.of(p);
+        File file = new File(p.getRootDir(), "junitSearchIndex.xml");
+        for (int i = 0; i < 100 && !(index.isComplete() && file.exists()); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(index.isComplete());
+        assertTrue(file.exists());
+
+        List<TestSearchIndex.Hit> hits = index.search("IllegalArgumentException loading", 10);
+        assertEquals(2, hits.size());
+        assertEquals(2, hits.get(0).getRun().getNumber());
+        assertEquals(1, hits.get(1).getRun().getNumber());
+        assertEquals(1, hits.get(0).getTests().size());
+        assertEquals("testGetRevokedClaimsForAdjustingFirm", hits.get(0).getTests().get(0).getName());
+
+        hits = index.search("testCreateVendorFirm", 1);
+        assertEquals(1, hits.size());
+        assertEquals(2, hits.get(0).getRun().getNumber());
+        assertTrue(hits.get(0).getTests().get(0).isPassed());
+
+        // both words occur in the build, but not in the same test
+        assertTrue(index.search("IllegalArgumentException testCreateVendorFirm", 10).isEmpty());
+        assertTrue(index.search("NoSuchWord", 10).isEmpty());
+
+        // only the newest candidate is loaded
+        TestSearchIndex.MAX_LOADS = 1;
+        hits = index.search("IllegalArgumentException loading", 10);
+        assertEquals(1, hits.size());
+        assertEquals(2, hits.get(0).getRun().getNumber());
+
+        // the index of a renamed job is not kept under its old name
+        p.renameTo("renamed");
+        TestSearchIndex renamed = TestSearchIndex.of(p);
+        assertNotSame(index, renamed);
+        assertSame(renamed, TestSearchIndex.of(p));
+    }
+}
@@ -0,0 +1,75 @@
+package hudson.tasks.junit;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestShardingTest {
+
+    private static TestResult parse(String name) throws Exception {
+        TestResult result = new TestResult();
+        result.parse(new File(TestShardingTest.class.getResource("sharding/" + name).toURI()), null);
+        result.tally();
+        return result;
+    }
+
+    @Test
+    public void estimates() throws Exception {
+        TestSharding sharding = TestSharding.of(Arrays.asList(parse("first.xml"), parse("second.xml")));
+        // the most recent duration of 20s weighs 0.3, the earlier estimate of 10s 0.7
+        assertEquals(13, sharding.getEstimate("com.example.SlowTest"), 1e-6);
+        assertEquals(6, sharding.getEstimate("com.example.MediumTest"), 1e-6);
+        assertEquals(7, sharding.getEstimate("com.example.NewTest"), 1e-6);
+    }
+
+    @Test
+    public void split() throws Exception {
+        TestSharding sharding = TestSharding.of(Arrays.asList(parse("first.xml"), parse("second.xml")));
+        List<TestSharding.Shard> shards = sharding.split(2, null);
+        assertEquals(Arrays.asList("com.example.SlowTest"), shards.get(0).getClasses());
+        assertEquals(Arrays.asList("com.example.FastTest", "com.example.MediumTest", "com.example.OtherMediumTest"),
+                shards.get(1).getClasses());
+        assertEquals(15, shards.get(1).getEstimatedDuration(), 1e-6);
+        assertEquals(Arrays.asList("com/example/SlowTest.java", "com/example/SlowTest.class"), shards.get(0).getIncludes());
+        assertEquals(shards.get(1).getIncludes(), shards.get(0).getExcludes());
+        assertTrue(shards.get(1).getExcludes().isEmpty());
+    }
+
+    @Test
+    public void splitWithUnseenClass() throws Exception {
+        TestSharding sharding = TestSharding.of(Arrays.asList(parse("first.xml"), parse("second.xml")));
+        List<TestSharding.Shard> shards = sharding.split(2, Arrays.asList("com.example.SlowTest", "com.example.MediumTest",
+                "com.example.OtherMediumTest", "com.example.FastTest", "com.example.NewTest"));
+        assertEquals(Arrays.asList("com.example.OtherMediumTest", "com.example.SlowTest"), shards.get(0).getClasses());
+        assertEquals(Arrays.asList("com.example.FastTest", "com.example.MediumTest", "com.example.NewTest"),
+                shards.get(1).getClasses());
+    }
+
+    @Test
+    public void nestedClasses() throws Exception {
+        TestSharding sharding = TestSharding.of(Collections.singletonList(parse("nested.xml")));
+        assertEquals(7, sharding.getEstimate("com.example.OuterTest"), 1e-6);
+        assertEquals(7, sharding.getEstimate("com.example.OuterTest$First"), 1e-6);
+        assertEquals(new HashSet<>(Arrays.asList("com.example.OtherTest", "com.example.OuterTest")),
+                sharding.getClassNames());
+        // the nested classes are run with their top level class, so they are not split from it
+        List<TestSharding.Shard> shards = sharding.split(2, null);
+        assertEquals(Arrays.asList("com.example.OuterTest"), shards.get(0).getClasses());
+        assertEquals(Arrays.asList("com.example.OtherTest"), shards.get(1).getClasses());
+    }
+
+    @Test
+    public void noHistory() {
+        TestSharding sharding = TestSharding.of(Collections.<TestResult>emptyList());
+        List<TestSharding.Shard> shards = sharding.split(3, Arrays.asList("a.A", "a.B", "a.C", "a.D"));
+        assertEquals(Arrays.asList("a.A", "a.D"), shards.get(0).getClasses());
+        assertEquals(Arrays.asList("a.B"), shards.get(1).getClasses());
+        assertEquals(Arrays.asList("a.C"), shards.get(2).getClasses());
+    }
+}
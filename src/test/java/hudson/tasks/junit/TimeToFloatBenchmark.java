@@ -0,0 +1,50 @@
+package hudson.tasks.junit;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares parsing times with {@link TimeToFloat} to parsing them the way it used to, on typical {@code time}
+ * attributes. Not run as a test; run its {@link #main(String[])} method and look at the last rounds.
+ */
+public class TimeToFloatBenchmark {
+
+    private static final int TIMES = 100000;
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        String[] times = new String[TIMES];
+        for (int i = 0; i < TIMES; i++) {
+            float duration = random.nextFloat() * (float) Math.pow(10, random.nextInt(5) - 2);
+            times[i] = i % 10 == 0 ? String.format(Locale.ENGLISH, "%,.3f", duration * 1000)
+                    : String.format(Locale.ENGLISH, "%.3f", duration);
+        }
+        float sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String time : times) {
+                sink += TimeToFloat.parse(time);
+            }
+            long current = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String time : times) {
+                sink += previous(time);
+            }
+            long previous = System.nanoTime() - start;
+            System.out.printf(Locale.ENGLISH, "round %2d: %6.1f ns/time, previously %6.1f ns/time%n",
+                    round, (double) current / TIMES, (double) previous / TIMES);
+        }
+        System.out.println(sink);
+    }
+
+    private static float previous(String time) {
+        time = time.replace(",", "");
+        try {
+            return Float.parseFloat(time);
+        } catch (NumberFormatException e) {
+            return 0.0f;
+        }
+    }
+}
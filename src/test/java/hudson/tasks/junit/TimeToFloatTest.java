@@ -0,0 +1,75 @@
+package hudson.tasks.junit;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimeToFloatTest {
+
+    /**
+     * How times were parsed before, which the current parser must match exactly.
+     */
+    private static float reference(String time) {
+        if (time != null) {
+            time = time.replace(",", "");
+            try {
+                return Float.parseFloat(time);
+            } catch (NumberFormatException e) {
+                try {
+                    return new DecimalFormat().parse(time).floatValue();
+                } catch (ParseException x) {
+                    // hmm, don't know what this format is.
+                }
+            }
+        }
+        return 0.0f;
+    }
+
+    private static void assertParsed(String time) {
+        assertEquals("parsing '" + time + "'", Float.floatToIntBits(reference(time)), Float.floatToIntBits(TimeToFloat.parse(time)));
+    }
+
+    @Test
+    public void parse() {
+        assertEquals(0.0f, TimeToFloat.parse(null), 0);
+        assertEquals(1.5f, TimeToFloat.parse("1.5"), 0);
+        assertEquals(1234.5f, TimeToFloat.parse("1,234.5"), 0);
+        assertEquals(0.25f, TimeToFloat.parse(" .25 "), 0);
+        assertEquals(1500f, TimeToFloat.parse("1.5E3"), 0);
+        assertEquals(0.0015f, TimeToFloat.parse("1.5e-3"), 0);
+        assertEquals(-2f, TimeToFloat.parse("-2"), 0);
+        assertEquals(0.0f, TimeToFloat.parse("abc"), 0);
+        // left to the fallbacks
+        assertEquals(1.5f, TimeToFloat.parse("1.5 s"), 0);
+        for (String time : new String[]{"", ",", "-", ".", "1.", "-0", "+.5", "1e", "1e+", "1,e,1", "1e1000",
+                "0e1000", "NaN", "Infinity", "0x1p3", "1.5f", "16777216", "16777217", "0.1234567891", "3.4028235E38",
+                "12345.6789012"}) {
+            assertParsed(time);
+        }
+    }
+
+    @Test
+    public void fuzz() {
+        Random random = new Random(42);
+        String alphabet = "0123456789000.,,-+eE f";
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder time = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                time.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertParsed(time.toString());
+        }
+        for (int i = 0; i < 200000; i++) {
+            float f = random.nextFloat() * (float) Math.pow(10, random.nextInt(14) - 6);
+            assertParsed(Float.toString(f));
+            assertParsed(String.format(Locale.ENGLISH, "%,." + random.nextInt(10) + "f", f));
+            assertParsed(String.format(Locale.ENGLISH, "%." + random.nextInt(8) + "e", f));
+        }
+    }
+}
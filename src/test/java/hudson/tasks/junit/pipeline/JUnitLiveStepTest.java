@@ -0,0 +1,66 @@
+package hudson.tasks.junit.pipeline;
+
+import hudson.FilePath;
+import hudson.tasks.junit.LiveTestResults;
+import hudson.tasks.junit.TestResultAction;
+import hudson.tasks.junit.TestResultTest;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.BuildWatcher;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class JUnitLiveStepTest {
+    @Rule
+    public final JenkinsRule rule = new JenkinsRule();
+
+    @ClassRule
+    public final static BuildWatcher buildWatcher = new BuildWatcher();
+
+    private final long interval = LiveTestResults.INTERVAL;
+
+    @After
+    public void resetInterval() {
+        LiveTestResults.INTERVAL = interval;
+    }
+
+    @Test
+    public void recordsWhileTestsAreRunning() throws Exception {
+        LiveTestResults.INTERVAL = 100;
+        WorkflowJob j = rule.jenkins.createProject(WorkflowJob.class, "recordsWhileTestsAreRunning");
+        j.setDefinition(new CpsFlowDefinition("node {\n" +
+                "  junitLive('reports/*.xml') {\n" +
+                "    semaphore 'tests'\n" +
+                "  }\n" +
+                "}\n", true));
+
+        WorkflowRun r = j.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("tests/1", r);
+        FilePath ws = rule.jenkins.getWorkspaceFor(j);
+        ws.child("reports/first-result.xml").copyFrom(TestResultTest.class.getResource("junit-report-1463.xml"));
+
+        rule.waitForMessage("Recorded 1 new test reports: 6 tests so far, 0 failed", r);
+        assertTrue(r.isBuilding());
+        TestResultAction action = r.getAction(TestResultAction.class);
+        assertNotNull(action);
+        assertEquals(6, action.getTotalCount());
+
+        // recorded either by a poll or once the body is over, but only once
+        ws.child("reports/second-result.xml").copyFrom(TestResultTest.class.getResource("junit-report-2874.xml"));
+        SemaphoreStep.success("tests/1", null);
+        rule.assertBuildStatusSuccess(rule.waitForCompletion(r));
+
+        action = r.getAction(TestResultAction.class);
+        assertEquals(2, action.getResult().getSuites().size());
+        assertEquals(7, action.getTotalCount());
+    }
+}
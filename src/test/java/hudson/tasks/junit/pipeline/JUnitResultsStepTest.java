@@ -156,6 +156,45 @@ public class JUnitResultsStepTest {
         }
     }
 
+    @Test
+    public void repeatedPatternOnlyParsesNewReports() throws Exception {
+        WorkflowJob j = rule.jenkins.createProject(WorkflowJob.class, "repeatedPatternOnlyParsesNewReports");
+        j.setDefinition(new CpsFlowDefinition("node {\n" +
+                "  def first = junit(testResults: '*.xml')\n" +
+                "  assert first.totalCount == 6\n" +
+                "  def again = junit(testResults: '*.xml')\n" +
+                "  assert again.totalCount == 0\n" +
+                "  writeFile(file: 'second-result.xml', text: \"<testsuite name='Second'><testcase classname='Second' name='test'/></testsuite>\")\n" +
+                "  def second = junit(testResults: '*.xml')\n" +
+                "  assert second.totalCount == 1\n" +
+                "}\n", true));
+        FilePath ws = rule.jenkins.getWorkspaceFor(j);
+        FilePath testFile = ws.child("test-result.xml");
+        testFile.copyFrom(TestResultTest.class.getResource("junit-report-1463.xml"));
+
+        WorkflowRun r = rule.buildAndAssertSuccess(j);
+        rule.assertLogContains("All 1 matching test reports were recorded before", r);
+        TestResultAction action = r.getAction(TestResultAction.class);
+        assertNotNull(action);
+        assertEquals(2, action.getResult().getSuites().size());
+        assertEquals(7, action.getTotalCount());
+    }
+
+    @Test
+    public void repeatedPatternWithoutTestsIsStillEmpty() throws Exception {
+        WorkflowJob j = rule.jenkins.createProject(WorkflowJob.class, "repeatedPatternWithoutTestsIsStillEmpty");
+        j.setDefinition(new CpsFlowDefinition("node {\n" +
+                "  writeFile(file: 'empty-result.xml', text: \"<testsuite name='Empty'/>\")\n" +
+                "  junit(testResults: '*.xml', allowEmptyResults: true)\n" +
+                "  junit(testResults: '*.xml')\n" +
+                "}\n", true));
+
+        WorkflowRun r = rule.assertBuildStatus(Result.FAILURE, j.scheduleBuild2(0));
+        rule.assertLogContains("All 1 matching test reports were recorded before", r);
+        rule.assertLogContains(Messages.JUnitResultArchiver_ResultIsEmpty(), r);
+        assertNull(r.getAction(TestResultAction.class));
+    }
+
     @Test
     public void twoSteps() throws Exception {
         WorkflowJob j = rule.jenkins.createProject(WorkflowJob.class, "twoSteps");
@@ -274,6 +313,39 @@ public class JUnitResultsStepTest {
         assertStageResults(r, 5, 10, 1, "first");
     }
 
+    @Test
+    public void manyParallelSteps() throws Exception {
+        WorkflowJob j = rule.jenkins.createProject(WorkflowJob.class, "manyParallelSteps");
+        FilePath ws = rule.jenkins.getWorkspaceFor(j);
+        int branches = 50;
+        for (int i = 0; i < branches; i++) {
+            ws.child("result-" + i + ".xml").write("<testsuite name='Suite" + i + "' tests='2' failures='0' errors='0' time='0.2'>\n" +
+                    "  <testcase classname='pkg.Suite" + i + "' name='first' time='0.1'/>\n" +
+                    "  <testcase classname='pkg.Suite" + i + "' name='second' time='0.1'/>\n" +
+                    "</testsuite>\n", "UTF-8");
+        }
+
+        j.setDefinition(new CpsFlowDefinition("node {\n" +
+                "  def branches = [:]\n" +
+                "  for (int i = 0; i < " + branches + "; i++) {\n" +
+                "    def n = i\n" +
+                "    branches['b' + n] = { def r = junit(testResults: 'result-' + n + '.xml'); assert r.totalCount == 2 }\n" +
+                "  }\n" +
+                "  parallel branches\n" +
+                "}\n", true
+        ));
+        WorkflowRun r = rule.assertBuildStatus(Result.SUCCESS,
+                rule.waitForCompletion(j.scheduleBuild2(0).waitForStart()));
+        TestResultAction action = r.getAction(TestResultAction.class);
+        assertNotNull(action);
+        assertEquals(1, r.getActions(TestResultAction.class).size());
+        assertEquals(branches, action.getResult().getSuites().size());
+        assertEquals(2 * branches, action.getTotalCount());
+        for (int i = 0; i < branches; i++) {
+            assertNotNull(action.getResult().getSuite("Suite" + i));
+        }
+    }
+
     @Issue("JENKINS-48196")
     @Test
     public void stageInParallel() throws Exception {
@@ -0,0 +1,52 @@
+package hudson.tasks.junit.pipeline;
+
+import hudson.FilePath;
+import hudson.tasks.junit.TestShardingTest;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.SnippetizerTester;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.BuildWatcher;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+
+public class SplitTestsByDurationStepTest {
+    @Rule
+    public final JenkinsRule rule = new JenkinsRule();
+
+    @ClassRule
+    public final static BuildWatcher buildWatcher = new BuildWatcher();
+
+    @Test
+    public void configRoundTrip() throws Exception {
+        SnippetizerTester st = new SnippetizerTester(rule);
+        SplitTestsByDurationStep step = new SplitTestsByDurationStep(4);
+        st.assertRoundTrip(step, "splitTestsByDuration 4");
+        step.setBuilds(5);
+        step.setClasses(Arrays.asList("com.example.FooTest"));
+        st.assertRoundTrip(step, "splitTestsByDuration builds: 5, classes: ['com.example.FooTest'], count: 4");
+    }
+
+    @Test
+    public void splitByRecordedDurations() throws Exception {
+        WorkflowJob j = rule.jenkins.createProject(WorkflowJob.class, "split");
+        FilePath ws = rule.jenkins.getWorkspaceFor(j);
+        ws.child("first.xml").copyFrom(TestShardingTest.class.getResource("sharding/first.xml"));
+        j.setDefinition(new CpsFlowDefinition("node {\n" +
+                "  junit 'first.xml'\n" +
+                "}\n", true));
+        rule.buildAndAssertSuccess(j);
+
+        j.setDefinition(new CpsFlowDefinition("def shards = splitTestsByDuration(count: 2)\n" +
+                "assert shards.size() == 2\n" +
+                "assert shards[0].classes == ['com.example.FastTest', 'com.example.SlowTest']\n" +
+                "assert shards[1].classes == ['com.example.MediumTest', 'com.example.OtherMediumTest']\n" +
+                "assert shards[0].excludes == shards[1].includes\n", true));
+        WorkflowRun r = rule.buildAndAssertSuccess(j);
+        rule.assertLogContains("Shard 0: 2 test classes, estimated 14.0 s", r);
+    }
+}
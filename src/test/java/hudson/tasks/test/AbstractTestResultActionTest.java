@@ -123,11 +123,8 @@ public class AbstractTestResultActionTest {
         Whitebox.setInternalState(abstractTestResultAction1,"run",run1);
         Whitebox.setInternalState(abstractTestResultAction2,"run",run2);
         Whitebox.setInternalState(abstractTestResultAction3,"run",run3);
-        StaplerRequest staplerRequest = mock(StaplerRequest.class);
-        doReturn("com").when(abstractTestResultAction,"getParameter",staplerRequest,"projectLevel");
-        doReturn("fail").when(abstractTestResultAction,"getParameter",staplerRequest,"orderBy");
         spy(Integer.class);
-        when(Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", Integer.MAX_VALUE)).thenReturn(Integer.MAX_VALUE);
+        when(Integer.getInteger(AbstractTestResultAction.class.getName() + ".test.trend.max", TestResultHistory.MAX_BUILDS)).thenReturn(Integer.MAX_VALUE);
         doReturn(abstractTestResultAction1).when(abstractTestResultAction).getPreviousResult(AbstractTestResultAction.class);
         doReturn(abstractTestResultAction2).when(abstractTestResultAction1).getPreviousResult(AbstractTestResultAction.class);
         doReturn(abstractTestResultAction3).when(abstractTestResultAction2).getPreviousResult(AbstractTestResultAction.class);
@@ -144,12 +141,17 @@ public class AbstractTestResultActionTest {
         doReturn(r).when(abstractTestResultAction1).loadXml();
         doReturn(r).when(abstractTestResultAction2).loadXml();
         doReturn(r).when(abstractTestResultAction3).loadXml();
+        doReturn(3L).when(abstractTestResultAction).getResultSizeEstimate();
+        doReturn(3L).when(abstractTestResultAction1).getResultSizeEstimate();
+        doReturn(3L).when(abstractTestResultAction2).getResultSizeEstimate();
+        doReturn(3L).when(abstractTestResultAction3).getResultSizeEstimate();
         doReturn(caseResultList).when(r).getFailedTests();
         doReturn("com.salesforce.hadoop.Class1.Test1").when(caseResult1).getFullName();
         doReturn("org.apache.hbase.Class2.Test2").when(caseResult2).getFullName();
         doReturn("com.salesforce.phoenix.Class3.Test3").when(caseResult3).getFullName();
         doReturn(new ArrayList<>()).when(r).getPassedTests();
-        XYSeriesCollection dataset = Whitebox.invokeMethod(abstractTestResultAction,"buildFlapperDataset",staplerRequest);
+        TrendDataset trendDataset = Whitebox.invokeMethod(abstractTestResultAction,"buildFlapperDataset","com","fail");
+        XYSeriesCollection dataset = (XYSeriesCollection) trendDataset.createXYDataset();
         XYSeriesCollection xySeriesCollection = new XYSeriesCollection();
         XYSeries xySeries;
         for(int series = 2;series>=1;series--){
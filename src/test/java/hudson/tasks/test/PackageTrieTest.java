@@ -0,0 +1,80 @@
+package hudson.tasks.test;
+
+import hudson.tasks.junit.TestResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class PackageTrieTest {
+
+    private PackageTrie trie;
+
+    @Before
+    public void parse() throws Exception {
+        TestResult result = new TestResult();
+        result.parse(new File(PackageTrieTest.class.getResource("package-trie.xml").toURI()), null);
+        trie = PackageTrie.of(result);
+    }
+
+    @Test
+    public void countsPerPackage() {
+        assertCounts(trie.getRoot(), 2, 2, 1);
+        assertCounts(trie.getNode("com"), 2, 1, 1);
+        assertCounts(trie.getNode("com.foo"), 1, 1, 1);
+        assertCounts(trie.getNode("com.foobar"), 1, 0, 0);
+        assertCounts(trie.getNode("org.baz.sub"), 0, 1, 0);
+        assertNull(trie.getNode("com.fo"));
+        assertNull(trie.getNode("net"));
+        // class names are not packages
+        assertNull(trie.getNode("com.foo.FooTest"));
+    }
+
+    @Test
+    public void levels() {
+        assertArrayEquals(new String[]{"com", "com.foo", "com.foobar", "org", "org.baz", "org.baz.sub"}, trie.getLevels(50));
+        // a level is only listed as a whole
+        assertArrayEquals(new String[]{"com", "org"}, trie.getLevels(4));
+        assertArrayEquals(new String[0], trie.getLevels(1));
+    }
+
+    @Test
+    public void toolTips() {
+        assertEquals("testPass, testPass", trie.getRoot().getPassToolTip());
+        assertEquals("testFail, testFail", trie.getRoot().getFailToolTip());
+        assertEquals("testSkip", trie.getNode("com.foo").getSkipToolTip());
+        assertEquals("", trie.getNode("com.foobar").getFailToolTip());
+        assertEquals("testFail", trie.getNode("org.baz.sub").getFailToolTip());
+    }
+
+    @Test
+    public void toolTipsAreCapped() {
+        ToolTipBuilder toolTip = new ToolTipBuilder();
+        int added = 0;
+        while (toolTip.add("testSomething")) {
+            added++;
+        }
+        assertTrue(toolTip.isFull());
+        assertFalse(toolTip.add("x"));
+        assertTrue(toolTip.toString().endsWith(",..."));
+        assertTrue(toolTip.toString().length() <= ToolTipBuilder.MAX_LENGTH + 2 * added + ",...".length());
+    }
+
+    @Test
+    public void isInPackage() {
+        assertTrue(PackageTrie.isInPackage("com.foo.FooTest", "com.foo"));
+        assertTrue(PackageTrie.isInPackage("com.foo.FooTest.testPass", "com"));
+        assertFalse(PackageTrie.isInPackage("com.foobar.BarTest", "com.foo"));
+        assertFalse(PackageTrie.isInPackage("com.foo", "com.foo"));
+        assertFalse(PackageTrie.isInPackage(null, "com"));
+    }
+
+    private static void assertCounts(PackageTrie.Node node, int pass, int fail, int skip) {
+        assertNotNull(node);
+        assertEquals(pass, node.getPassCount());
+        assertEquals(fail, node.getFailCount());
+        assertEquals(skip, node.getSkipCount());
+    }
+}
@@ -0,0 +1,65 @@
+package hudson.tasks.test;
+
+import hudson.tasks.junit.TestResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestListIndexTest {
+
+    private TestResult result;
+
+    @Before
+    public void parse() throws Exception {
+        result = new TestResult();
+        result.parse(new File(TestListIndexTest.class.getResource("/hudson/tasks/junit/pipeline/junit-report-testTrends-first-3.xml").toURI()), null);
+        result.tally();
+    }
+
+    private static List<String> names(TestListIndex.Page page) {
+        List<String> names = new ArrayList<>();
+        for (hudson.tasks.test.TestResult test : page.getTests()) {
+            names.add(test.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void sortByDuration() {
+        TestListIndex index = result.getTestListIndex("passed");
+        assertEquals(5, index.size());
+        TestListIndex.Page page = index.getPage(TestListIndex.Sort.DURATION, null, 0, 3);
+        assertEquals(5, page.getTotal());
+        assertEquals("[testGetRevokedClaimsForAdjustingFirm, testAddVendorLocation, testUpdateVendorFirm]", names(page).toString());
+        assertTrue(page.hasNext());
+        assertFalse(page.hasPrevious());
+
+        page = index.getPage(TestListIndex.Sort.DURATION, null, page.getNextStart(), 3);
+        assertEquals("[testCreateVendor_NoPrimaryLocation, testCreateVendor_NoPrimaryRep]", names(page).toString());
+        assertFalse(page.hasNext());
+        assertTrue(page.hasPrevious());
+    }
+
+    @Test
+    public void filterByName() {
+        TestListIndex.Page page = result.getTestListIndex("passed").getPage(TestListIndex.Sort.NAME, "VENDOR_", 0, 10);
+        assertEquals(2, page.getTotal());
+        assertEquals("[testCreateVendor_NoPrimaryLocation, testCreateVendor_NoPrimaryRep]", names(page).toString());
+    }
+
+    @Test
+    public void failedTestsByName() {
+        TestListIndex.Page page = result.getTestListIndex("failed").getPage(TestListIndex.Sort.NAME, "", 0, 10);
+        assertEquals("[testCreateAdjustingFirm, testCreateVendorFirm, testGetVendorFirmKeyForVendorRep]", names(page).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStatus() {
+        result.getTestListIndex("flaky");
+    }
+}
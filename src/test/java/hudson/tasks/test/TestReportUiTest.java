@@ -35,6 +35,7 @@ import hudson.model.FreeStyleProject;
 import hudson.model.Result;
 import hudson.tasks.junit.JUnitResultArchiver;
 import java.io.IOException;
+import net.sf.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -88,6 +89,36 @@ public class TestReportUiTest {
         Assert.assertNotNull(pg.getFirstByXPath("//td[contains(text(),'" + duration2_5sec + "')][contains(@class,'no-wrap')]"));
     }
 
+    @Test
+    public void testList() throws Exception {
+        AbstractBuild b = configureTestBuild("test-list");
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        Page page = wc.goTo(b.getUrl() + "testReport/testList?status=passed&sort=name&limit=1", "application/json");
+        JSONObject json = JSONObject.fromObject(page.getWebResponse().getContentAsString());
+        Assert.assertEquals(1, json.getJSONArray("tests").size());
+        Assert.assertEquals("name", json.getString("sort"));
+
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        page = wc.goTo(b.getUrl() + "testReport/testList?limit=ten", null);
+        Assert.assertEquals(400, page.getWebResponse().getStatusCode());
+    }
+
+    @Test
+    public void diffAgainstNeedsBuildNumber() throws Exception {
+        AbstractBuild b = configureTestBuild("diff");
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        Page page = wc.goTo(b.getUrl() + "testReport/diff?against=" + b.getNumber(), "application/json");
+        Assert.assertEquals(200, page.getWebResponse().getStatusCode());
+
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        page = wc.goTo(b.getUrl() + "testReport/diff", null);
+        Assert.assertEquals(400, page.getWebResponse().getStatusCode());
+        page = wc.goTo(b.getUrl() + "testReport/diff?against=last", null);
+        Assert.assertEquals(400, page.getWebResponse().getStatusCode());
+    }
+
     /**
      * Creates a freestyle project & build with UNSTABLE status
      * containing a test report from: /hudson/tasks/junit/junit-report-20090516.xml
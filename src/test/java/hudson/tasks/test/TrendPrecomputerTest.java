@@ -0,0 +1,120 @@
+package hudson.tasks.test;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.tasks.junit.JUnitResultArchiver;
+import hudson.tasks.junit.TestResultAction;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYDataset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TrendPrecomputerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void disableListener() {
+        // computed explicitly below rather than racing with the listener
+        TrendPrecomputer.DISABLED = true;
+    }
+
+    @After
+    public void enableListener() {
+        TrendPrecomputer.DISABLED = false;
+        TrendDatasetCache.invalidateAll();
+    }
+
+    @Test
+    public void storedTrendsMatchComputedTrends() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("junit.xml").copyFrom(
+                        getClass().getResource("/hudson/tasks/junit/junit-report-20090516.xml"));
+                return true;
+            }
+        });
+        p.getPublishersList().add(new JUnitResultArchiver("*.xml"));
+        j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+        FreeStyleBuild b = j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+
+        TestResultAction action = b.getAction(TestResultAction.class);
+        TrendPrecomputer.precompute(action);
+        assertTrue(new File(b.getRootDir(), "junitTrends.xml").exists());
+
+        for (String trendType : new String[]{AbstractTestResultAction.BUILD_ANALYSIS, AbstractTestResultAction.LENGTHY_TESTS}) {
+            TrendDatasetCache.Key key = new TrendDatasetCache.Key(b, trendType, AbstractTestResultAction.ALLPROJECTS,
+                    AbstractTestResultAction.MEAN, AbstractTestResultAction.FAILMETRIC, false);
+            TrendDataset stored = TrendPrecomputer.load(b, key);
+            assertNotNull(trendType, stored);
+            CategoryDataset expected = action.computeTrendDataset(key).createCategoryDataset();
+            CategoryDataset actual = stored.createCategoryDataset();
+            assertEquals(expected.getRowKeys(), actual.getRowKeys());
+            assertEquals(expected.getColumnKeys(), actual.getColumnKeys());
+            assertEquals(b.getDisplayName(), actual.getColumnKey(actual.getColumnCount() - 1).toString());
+            for (int r = 0; r < expected.getRowCount(); r++) {
+                for (int c = 0; c < expected.getColumnCount(); c++) {
+                    assertEquals(expected.getValue(r, c).doubleValue(), actual.getValue(r, c).doubleValue(), 0);
+                }
+            }
+        }
+
+        TrendDatasetCache.Key key = new TrendDatasetCache.Key(b, AbstractTestResultAction.FLAKY_TESTS,
+                AbstractTestResultAction.ALLPROJECTS, AbstractTestResultAction.MEAN, AbstractTestResultAction.FAILMETRIC, false);
+        TrendDataset stored = TrendPrecomputer.load(b, key);
+        assertNotNull(stored);
+        XYDataset expected = action.computeTrendDataset(key).createXYDataset();
+        XYDataset actual = stored.createXYDataset();
+        assertEquals(expected.getSeriesCount(), actual.getSeriesCount());
+        for (int s = 0; s < expected.getSeriesCount(); s++) {
+            assertEquals(expected.getItemCount(s), actual.getItemCount(s));
+        }
+
+        // project levels are left to be computed on demand
+        String[] levels = action.getProjectList();
+        assertTrue(levels.length > 0);
+        assertNull(TrendPrecomputer.load(b, new TrendDatasetCache.Key(b, AbstractTestResultAction.BUILD_ANALYSIS,
+                levels[0], AbstractTestResultAction.MEAN, AbstractTestResultAction.FAILMETRIC, false)));
+    }
+
+    @Test
+    public void newResultDropsComputedTrends() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("junit.xml").copyFrom(
+                        getClass().getResource("/hudson/tasks/junit/junit-report-20090516.xml"));
+                return true;
+            }
+        });
+        p.getPublishersList().add(new JUnitResultArchiver("*.xml"));
+        FreeStyleBuild b = j.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+
+        TestResultAction action = b.getAction(TestResultAction.class);
+        TrendPrecomputer.precompute(action);
+        TrendDatasetCache.Key key = new TrendDatasetCache.Key(b, AbstractTestResultAction.BUILD_ANALYSIS,
+                AbstractTestResultAction.ALLPROJECTS, AbstractTestResultAction.MEAN, AbstractTestResultAction.FAILMETRIC, false);
+        assertNotNull(TrendPrecomputer.load(b, key));
+
+        action.setResult(action.getResult(), j.createTaskListener());
+        assertFalse(new File(b.getRootDir(), "junitTrends.xml").exists());
+        assertNull(TrendPrecomputer.load(b, key));
+    }
+}